@@ -0,0 +1,76 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.bench;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.ChubaoFileSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Creates the file systems of the benchmarks. If HADOOP_CONF_DIR is set they run against
+ * the volume configured there, otherwise against an {@link InMemoryFileStorage}.
+ */
+public class BenchFileSystems {
+  public static final String IN_MEMORY_URI = "cfs://bench";
+
+  private static File inMemoryConfDir;
+
+  public static boolean isInMemory() {
+    return System.getenv("HADOOP_CONF_DIR") == null;
+  }
+
+  public static FileSystem newInstance() throws IOException {
+    Configuration conf = new Configuration();
+    conf.set("fs.cfs.impl", ChubaoFileSystem.class.getName());
+    String confDir = System.getenv("HADOOP_CONF_DIR");
+    if (confDir != null) {
+      conf.addResource(new Path(confDir, "core-site.xml"));
+    } else {
+      System.setProperty("HADOOP_CONF_DIR", inMemoryConfDir().getPath());
+      conf.set(FileSystem.FS_DEFAULT_NAME_KEY, IN_MEMORY_URI);
+    }
+    return FileSystem.newInstance(FileSystem.getDefaultUri(conf), conf);
+  }
+
+  private static synchronized File inMemoryConfDir() throws IOException {
+    if (inMemoryConfDir != null) {
+      return inMemoryConfDir;
+    }
+    File dir = Files.createTempDirectory("cfs-bench").toFile();
+    dir.deleteOnExit();
+    File site = new File(dir, "cfs-site.xml");
+    site.deleteOnExit();
+    try (Writer writer = Files.newBufferedWriter(site.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("<configuration>\n");
+      property(writer, "cfs.master.addr", "127.0.0.1:17010");
+      property(writer, "cfs.volume.name", "bench");
+      property(writer, "cfs.volume.owner", "bench");
+      property(writer, "cfs.storage.factory", InMemoryStorageFactory.class.getName());
+      writer.write("</configuration>\n");
+    }
+    inMemoryConfDir = dir;
+    return dir;
+  }
+
+  private static void property(Writer writer, String name, String value) throws IOException {
+    writer.write("  <property>\n    <name>" + name + "</name>\n    <value>" + value + "</value>\n  </property>\n");
+  }
+}
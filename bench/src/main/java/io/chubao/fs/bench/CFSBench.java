@@ -0,0 +1,501 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.bench;
+
+import org.HdrHistogram.Histogram;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A multi-threaded load generator which drives ChubaoFileSystem directly, without a YARN cluster.
+ * It runs a workload for a duration and reports the throughput and the latency percentiles of
+ * every operation. Like the JMH benchmarks, it runs against the volume of HADOOP_CONF_DIR if it
+ * is set, otherwise against an in-memory storage.
+ *
+ * <pre>
+ * java -cp benchmarks.jar io.chubao.fs.bench.CFSBench -workload meta -threads 32 -duration 60
+ * </pre>
+ */
+public class CFSBench {
+  private static final String USAGE = "Usage: CFSBench [options]\n"
+      + "  -workload <meta|write|read|randread|pread>  default meta\n"
+      + "  -threads <n>           concurrent threads, default 16\n"
+      + "  -duration <seconds>    default 30\n"
+      + "  -mix <op=weight,...>   the meta ops, default create=1,stat=4,list=1,rename=1,delete=1\n"
+      + "  -fileSize <size>       the file of every thread in the I/O workloads, default 64m\n"
+      + "  -bufferSize <size>     bytes per read or write call, default 1m\n"
+      + "  -base <dir>            default /cfs-bench\n"
+      + "  -keep                  keep the files after the run\n"
+      + "The meta workload creates, stats, lists, renames and deletes empty files in a dir per thread.\n"
+      + "write/read write and read the file of every thread sequentially, randread seeks to random\n"
+      + "offsets of it, and pread runs positioned reads of one stream shared by all threads.";
+
+  private static final String[] META_OPS = {"create", "stat", "list", "rename", "delete"};
+
+  private enum Workload {
+    META, WRITE, READ, RANDREAD, PREAD
+  }
+
+  private Workload workload = Workload.META;
+  private int threads = 16;
+  private long durationSec = 30;
+  private final Map<String, Integer> mix = new LinkedHashMap<>();
+  private long fileSize = 64L * 1024 * 1024;
+  private int bufferSize = 1024 * 1024;
+  private Path base = new Path("/cfs-bench");
+  private boolean keep = false;
+
+  private FileSystem fs;
+
+  public static void main(String[] args) throws Exception {
+    CFSBench bench = new CFSBench();
+    try {
+      bench.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+    bench.run();
+  }
+
+  private void parse(String[] args) {
+    mix.put("create", 1);
+    mix.put("stat", 4);
+    mix.put("list", 1);
+    mix.put("rename", 1);
+    mix.put("delete", 1);
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("-keep")) {
+        keep = true;
+        continue;
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing the value of " + arg);
+      }
+      String value = args[++i];
+      switch (arg) {
+        case "-workload":
+          workload = Workload.valueOf(value.toUpperCase(Locale.ROOT));
+          break;
+        case "-threads":
+          threads = Integer.parseInt(value);
+          break;
+        case "-duration":
+          durationSec = Long.parseLong(value);
+          break;
+        case "-mix":
+          parseMix(value);
+          break;
+        case "-fileSize":
+          fileSize = StringUtils.TraditionalBinaryPrefix.string2long(value);
+          break;
+        case "-bufferSize":
+          bufferSize = (int) StringUtils.TraditionalBinaryPrefix.string2long(value);
+          break;
+        case "-base":
+          base = new Path(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+    if (threads <= 0 || durationSec <= 0 || fileSize < bufferSize || bufferSize <= 0) {
+      throw new IllegalArgumentException("Invalid threads, duration, fileSize or bufferSize.");
+    }
+  }
+
+  private void parseMix(String value) {
+    mix.clear();
+    for (String entry : value.split(",")) {
+      String[] kv = entry.split("=");
+      if (kv.length != 2 || !Arrays.asList(META_OPS).contains(kv[0])) {
+        throw new IllegalArgumentException("Invalid mix: " + value);
+      }
+      mix.put(kv[0], Integer.parseInt(kv[1]));
+    }
+  }
+
+  private void run() throws Exception {
+    fs = BenchFileSystems.newInstance();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      System.out.println("workload=" + workload.name().toLowerCase(Locale.ROOT) + " threads=" + threads
+          + " duration=" + durationSec + "s fs=" + fs.getUri()
+          + (BenchFileSystems.isInMemory() ? " (in-memory)" : ""));
+      fs.mkdirs(base);
+      prepare(pool);
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSec);
+      List<Worker> workers = new ArrayList<>();
+      FSDataInputStream shared = workload == Workload.PREAD ? fs.open(dataFile(0)) : null;
+      for (int i = 0; i < threads; i++) {
+        workers.add(newWorker(i, deadline, shared));
+      }
+      long start = System.nanoTime();
+      invokeAll(pool, workers);
+      long elapsed = System.nanoTime() - start;
+      if (shared != null) {
+        shared.close();
+      }
+      report(workers, elapsed);
+    } finally {
+      pool.shutdownNow();
+      if (!keep) {
+        fs.delete(base, true);
+      }
+      fs.close();
+    }
+  }
+
+  /**
+   * Writes the files the read workloads read, the preparation is not measured.
+   */
+  private void prepare(ExecutorService pool) throws Exception {
+    if (workload == Workload.META || workload == Workload.WRITE) {
+      return;
+    }
+    int files = workload == Workload.PREAD ? 1 : threads;
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < files; i++) {
+      final Path path = dataFile(i);
+      tasks.add(() -> {
+        if (fs.exists(path) && fs.getFileStatus(path).getLen() >= fileSize) {
+          return null;
+        }
+        byte[] buf = new byte[bufferSize];
+        new Random(path.hashCode()).nextBytes(buf);
+        try (FSDataOutputStream out = fs.create(path, true)) {
+          for (long done = 0; done < fileSize; done += buf.length) {
+            out.write(buf, 0, (int) Math.min(buf.length, fileSize - done));
+          }
+        }
+        return null;
+      });
+    }
+    invokeAll(pool, tasks);
+  }
+
+  private Worker newWorker(int id, long deadline, FSDataInputStream shared) {
+    switch (workload) {
+      case META:
+        return new MetaWorker(id, deadline);
+      case WRITE:
+        return new WriteWorker(id, deadline);
+      case READ:
+        return new ReadWorker(id, deadline, false);
+      case RANDREAD:
+        return new ReadWorker(id, deadline, true);
+      default:
+        return new PreadWorker(id, deadline, shared);
+    }
+  }
+
+  private Path dataFile(int id) {
+    return new Path(base, "data/t" + id);
+  }
+
+  private static <T> void invokeAll(ExecutorService pool, List<? extends Callable<T>> tasks) throws Exception {
+    List<Future<T>> futures = new ArrayList<>();
+    for (Callable<T> task : tasks) {
+      futures.add(pool.submit(task));
+    }
+    try {
+      for (Future<T> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  private void report(List<Worker> workers, long elapsedNanos) {
+    Map<String, Histogram> total = new LinkedHashMap<>();
+    Map<String, Long> bytes = new LinkedHashMap<>();
+    for (Worker worker : workers) {
+      for (Map.Entry<String, Histogram> entry : worker.histograms.entrySet()) {
+        total.computeIfAbsent(entry.getKey(), k -> newHistogram()).add(entry.getValue());
+      }
+      for (Map.Entry<String, Long> entry : worker.bytes.entrySet()) {
+        bytes.merge(entry.getKey(), entry.getValue(), Long::sum);
+      }
+    }
+    double seconds = elapsedNanos / 1e9;
+    System.out.println(String.format("%-8s %10s %10s %10s %10s %10s %10s %10s %10s",
+        "op", "count", "ops/s", "MB/s", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+    for (Map.Entry<String, Histogram> entry : total.entrySet()) {
+      Histogram h = entry.getValue();
+      long b = bytes.getOrDefault(entry.getKey(), 0L);
+      System.out.println(String.format("%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f",
+          entry.getKey(), h.getTotalCount(), h.getTotalCount() / seconds, b / seconds / (1024 * 1024),
+          micros(h.getValueAtPercentile(50)), micros(h.getValueAtPercentile(90)),
+          micros(h.getValueAtPercentile(99)), micros(h.getValueAtPercentile(99.9)), micros(h.getMaxValue())));
+    }
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  private static Histogram newHistogram() {
+    return new Histogram(3);
+  }
+
+  /**
+   * Runs steps until the deadline, with a histogram per operation. The histograms are
+   * merged after the run, so the threads record without contention.
+   */
+  private abstract class Worker implements Callable<Void> {
+    final int id;
+    final long deadline;
+    final Random random;
+    final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    final Map<String, Long> bytes = new LinkedHashMap<>();
+
+    Worker(int id, long deadline) {
+      this.id = id;
+      this.deadline = deadline;
+      this.random = new Random(id);
+    }
+
+    @Override
+    public Void call() throws IOException {
+      setup();
+      try {
+        while (System.nanoTime() < deadline) {
+          step();
+        }
+      } finally {
+        cleanup();
+      }
+      return null;
+    }
+
+    void setup() throws IOException {
+    }
+
+    abstract void step() throws IOException;
+
+    void cleanup() throws IOException {
+    }
+
+    void record(String op, long startNanos, long size) {
+      histograms.computeIfAbsent(op, k -> newHistogram()).recordValue(System.nanoTime() - startNanos);
+      if (size > 0) {
+        bytes.merge(op, size, Long::sum);
+      }
+    }
+  }
+
+  private class MetaWorker extends Worker {
+    private final Path dir;
+    private final List<Path> files = new ArrayList<>();
+    private final String[] ops;
+    private final int[] weights;
+    private final int totalWeight;
+    private long next = 0;
+
+    MetaWorker(int id, long deadline) {
+      super(id, deadline);
+      this.dir = new Path(base, "meta/t" + id);
+      this.ops = mix.keySet().toArray(new String[0]);
+      this.weights = new int[ops.length];
+      int sum = 0;
+      for (int i = 0; i < ops.length; i++) {
+        sum += mix.get(ops[i]);
+        weights[i] = sum;
+      }
+      this.totalWeight = sum;
+    }
+
+    @Override
+    void setup() throws IOException {
+      fs.mkdirs(dir);
+    }
+
+    @Override
+    void step() throws IOException {
+      String op = pick();
+      if (files.isEmpty() && !op.equals("create") && !op.equals("list")) {
+        op = "create";
+      }
+      long start = System.nanoTime();
+      switch (op) {
+        case "create": {
+          Path path = new Path(dir, "f" + next++);
+          fs.create(path, false).close();
+          files.add(path);
+          break;
+        }
+        case "stat":
+          fs.getFileStatus(files.get(random.nextInt(files.size())));
+          break;
+        case "list":
+          fs.listStatus(dir);
+          break;
+        case "rename": {
+          int i = random.nextInt(files.size());
+          Path to = new Path(dir, "f" + next++);
+          if (!fs.rename(files.get(i), to)) {
+            throw new IOException("Failed to rename " + files.get(i) + " to " + to);
+          }
+          files.set(i, to);
+          break;
+        }
+        default: {
+          int i = random.nextInt(files.size());
+          Path path = files.get(i);
+          files.set(i, files.get(files.size() - 1));
+          files.remove(files.size() - 1);
+          if (!fs.delete(path, false)) {
+            throw new IOException("Failed to delete " + path);
+          }
+          break;
+        }
+      }
+      record(op, start, 0);
+    }
+
+    private String pick() {
+      int r = random.nextInt(totalWeight);
+      for (int i = 0; i < ops.length; i++) {
+        if (r < weights[i]) {
+          return ops[i];
+        }
+      }
+      return ops[ops.length - 1];
+    }
+  }
+
+  private class WriteWorker extends Worker {
+    private final byte[] buf = new byte[bufferSize];
+    private FSDataOutputStream out;
+    private long written;
+
+    WriteWorker(int id, long deadline) {
+      super(id, deadline);
+      random.nextBytes(buf);
+    }
+
+    @Override
+    void step() throws IOException {
+      if (out == null) {
+        long start = System.nanoTime();
+        out = fs.create(dataFile(id), true);
+        record("create", start, 0);
+        written = 0;
+      }
+      long start = System.nanoTime();
+      out.write(buf, 0, buf.length);
+      record("write", start, buf.length);
+      written += buf.length;
+      if (written >= fileSize) {
+        closeFile();
+      }
+    }
+
+    @Override
+    void cleanup() throws IOException {
+      if (out != null) {
+        closeFile();
+      }
+    }
+
+    private void closeFile() throws IOException {
+      long start = System.nanoTime();
+      out.close();
+      out = null;
+      record("close", start, 0);
+    }
+  }
+
+  private class ReadWorker extends Worker {
+    private final boolean randomRead;
+    private final byte[] buf = new byte[bufferSize];
+    private FSDataInputStream in;
+
+    ReadWorker(int id, long deadline, boolean randomRead) {
+      super(id, deadline);
+      this.randomRead = randomRead;
+    }
+
+    @Override
+    void setup() throws IOException {
+      in = fs.open(dataFile(id));
+    }
+
+    @Override
+    void step() throws IOException {
+      long start = System.nanoTime();
+      if (randomRead) {
+        in.seek(randomOffset(random));
+        in.readFully(buf);
+        record("randread", start, buf.length);
+        return;
+      }
+      int size = in.read(buf, 0, buf.length);
+      if (size < 0) {
+        in.seek(0);
+        return;
+      }
+      record("read", start, size);
+    }
+
+    @Override
+    void cleanup() throws IOException {
+      in.close();
+    }
+  }
+
+  private class PreadWorker extends Worker {
+    private final FSDataInputStream in;
+    private final byte[] buf = new byte[bufferSize];
+
+    PreadWorker(int id, long deadline, FSDataInputStream in) {
+      super(id, deadline);
+      this.in = in;
+    }
+
+    @Override
+    void step() throws IOException {
+      long start = System.nanoTime();
+      in.readFully(randomOffset(random), buf);
+      record("pread", start, buf.length);
+    }
+  }
+
+  private long randomOffset(Random random) {
+    long blocks = fileSize / bufferSize;
+    return (long) (random.nextDouble() * blocks) * bufferSize;
+  }
+}
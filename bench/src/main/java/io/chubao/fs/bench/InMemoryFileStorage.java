@@ -0,0 +1,386 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.bench;
+
+import io.chubao.fs.sdk.CFSFile;
+import io.chubao.fs.sdk.CFSStatInfo;
+import io.chubao.fs.sdk.FileStorage;
+import io.chubao.fs.sdk.exception.CFSException;
+import io.chubao.fs.sdk.exception.CFSFileNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-process FileStorage which keeps the whole tree in memory, so the benchmarks measure
+ * the adapter instead of the network. The nodes are looked up from the root, a rename
+ * moves one entry between two directories under a global lock.
+ */
+public class InMemoryFileStorage implements FileStorage {
+  private static final int S_IFDIR = 0040000;
+  private static final int S_IFREG = 0100000;
+  private static final int UID = 0;
+  private static final int GID = 0;
+  private static final String USER = "root";
+  private static final String GROUP = "root";
+  private static final long BLOCK_SIZE = 128L * 1024 * 1024;
+
+  private final Node root = Node.newDir(0755, UID, GID);
+  private final Object renameLock = new Object();
+
+  private static class Node {
+    final boolean dir;
+    final Map<String, Node> children;
+    volatile int mode;
+    volatile int uid;
+    volatile int gid;
+    volatile long ctime;
+    volatile long mtime;
+    volatile long atime;
+    byte[] data;
+    long size;
+
+    private Node(boolean dir, int mode, int uid, int gid) {
+      this.dir = dir;
+      this.children = dir ? new ConcurrentHashMap<>() : null;
+      this.mode = mode;
+      this.uid = uid;
+      this.gid = gid;
+      this.data = dir ? null : new byte[0];
+      this.ctime = this.mtime = this.atime = now();
+    }
+
+    static Node newDir(int mode, int uid, int gid) {
+      return new Node(true, mode, uid, gid);
+    }
+
+    static Node newFile(int mode, int uid, int gid) {
+      return new Node(false, mode, uid, gid);
+    }
+
+    synchronized long size() {
+      return dir ? 0 : size;
+    }
+
+    synchronized CFSStatInfo stat(String name) {
+      int type = dir ? S_IFDIR : S_IFREG;
+      return new CFSStatInfo(type | (mode & 07777), uid, gid, size(), ctime, mtime, atime, name);
+    }
+
+    synchronized int read(long position, byte[] buf, int off, int len) {
+      if (position >= size) {
+        return 0;
+      }
+      int n = (int) Math.min(len, size - position);
+      System.arraycopy(data, (int) position, buf, off, n);
+      return n;
+    }
+
+    synchronized void write(long position, byte[] buf, int off, int len) {
+      long end = position + len;
+      if (end > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("The in-memory file is too large: " + end);
+      }
+      if (end > data.length) {
+        data = Arrays.copyOf(data, (int) Math.max(end, Math.min(Integer.MAX_VALUE, data.length * 2L)));
+      }
+      System.arraycopy(buf, off, data, (int) position, len);
+      size = Math.max(size, end);
+      mtime = now();
+    }
+
+    synchronized void truncate(long len) {
+      if (len > data.length) {
+        data = Arrays.copyOf(data, (int) len);
+      } else if (len < size) {
+        Arrays.fill(data, (int) len, (int) size, (byte) 0);
+      }
+      size = len;
+      mtime = now();
+    }
+  }
+
+  private static class InMemoryFile implements CFSFile {
+    private final Node node;
+    private final boolean append;
+    private long position;
+
+    InMemoryFile(Node node, boolean append) {
+      this.node = node;
+      this.append = append;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int off, int len) {
+      if (append) {
+        position = node.size();
+      }
+      node.write(position, data, off, len);
+      position += len;
+    }
+
+    @Override
+    public synchronized long read(byte[] buf, int off, int len) {
+      int n = node.read(position, buf, off, len);
+      position += n;
+      return n;
+    }
+
+    @Override
+    public long read(long position, byte[] buf, int off, int len) {
+      return node.read(position, buf, off, len);
+    }
+
+    @Override
+    public synchronized void seek(long pos) {
+      position = pos;
+    }
+
+    @Override
+    public synchronized long getPosition() {
+      return position;
+    }
+
+    @Override
+    public long getFileSize() {
+      return node.size();
+    }
+  }
+
+  @Override
+  public CFSFile open(String path, int flags, int mode, int uid, int gid) throws CFSException {
+    Node node = lookup(path);
+    if (node == null) {
+      if ((flags & O_CREAT) == 0) {
+        throw new CFSFileNotFoundException(path);
+      }
+      Node parent = parentDir(path);
+      Node created = Node.newFile(mode, uid, gid);
+      node = parent.children.putIfAbsent(name(path), created);
+      if (node == null) {
+        node = created;
+        parent.mtime = now();
+      }
+    }
+    if (node.dir) {
+      if ((flags & (O_WRONLY | O_CREAT | O_TRUNC | O_APPEND)) != 0) {
+        throw new CFSException("Is a directory: " + path);
+      }
+    } else if ((flags & O_TRUNC) != 0) {
+      node.truncate(0);
+    }
+    return new InMemoryFile(node, (flags & O_APPEND) != 0);
+  }
+
+  @Override
+  public boolean mkdirs(String path, int mode, int uid, int gid) throws CFSException {
+    Node node = root;
+    for (String name : split(path)) {
+      Node created = Node.newDir(mode, uid, gid);
+      Node child = node.children.putIfAbsent(name, created);
+      if (child == null) {
+        child = created;
+        node.mtime = now();
+      } else if (!child.dir) {
+        throw new CFSException("Not a directory: " + path);
+      }
+      node = child;
+    }
+    return true;
+  }
+
+  @Override
+  public void truncate(String path, long len) throws CFSException {
+    Node node = existing(path);
+    if (node.dir) {
+      throw new CFSException("Is a directory: " + path);
+    }
+    node.truncate(len);
+  }
+
+  @Override
+  public void rmdir(String path, boolean recursive) throws CFSException {
+    Node node = existing(path);
+    if (!node.dir) {
+      throw new CFSException("Not a directory: " + path);
+    }
+    if (!recursive && !node.children.isEmpty()) {
+      throw new CFSException("Directory not empty: " + path);
+    }
+    remove(path, node);
+  }
+
+  @Override
+  public void unlink(String path) throws CFSException {
+    Node node = existing(path);
+    if (node.dir) {
+      throw new CFSException("Is a directory: " + path);
+    }
+    remove(path, node);
+  }
+
+  @Override
+  public void rename(String from, String to) throws CFSException {
+    synchronized (renameLock) {
+      Node node = existing(from);
+      Node dst = lookup(to);
+      if (dst != null && dst.dir && (!node.dir || !dst.children.isEmpty())) {
+        throw new CFSException("Failed to rename " + from + " to " + to);
+      }
+      Node parent = parentDir(to);
+      parent.children.put(name(to), node);
+      parentDir(from).children.remove(name(from), node);
+      parent.mtime = now();
+    }
+  }
+
+  @Override
+  public void chmod(String path, int mode) throws CFSException {
+    existing(path).mode = mode;
+  }
+
+  @Override
+  public void chown(String path, String user, String group) throws CFSException {
+    existing(path);
+  }
+
+  @Override
+  public void setTimes(String path, long mtime, long atime) throws CFSException {
+    Node node = existing(path);
+    node.mtime = mtime;
+    node.atime = atime;
+  }
+
+  @Override
+  public CFSStatInfo stat(String path) throws CFSException {
+    Node node = lookup(path);
+    return node == null ? null : node.stat("");
+  }
+
+  @Override
+  public CFSStatInfo[] list(String path) throws CFSException {
+    Node node = existing(path);
+    if (!node.dir) {
+      throw new CFSException("Not a directory: " + path);
+    }
+    List<CFSStatInfo> infos = new ArrayList<>(node.children.size());
+    for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+      infos.add(entry.getValue().stat(entry.getKey()));
+    }
+    return infos.toArray(new CFSStatInfo[0]);
+  }
+
+  @Override
+  public int getReplicaNumber() {
+    return 3;
+  }
+
+  @Override
+  public long getBlockSize() {
+    return BLOCK_SIZE;
+  }
+
+  @Override
+  public String getUser(int uid) {
+    return USER;
+  }
+
+  @Override
+  public String getGroup(int gid) {
+    return GROUP;
+  }
+
+  @Override
+  public int getUid(String user) {
+    return UID;
+  }
+
+  @Override
+  public int getGidByUser(String user) {
+    return GID;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  private Node lookup(String path) {
+    Node node = root;
+    for (String name : split(path)) {
+      if (!node.dir) {
+        return null;
+      }
+      node = node.children.get(name);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  private Node existing(String path) throws CFSException {
+    Node node = lookup(path);
+    if (node == null) {
+      throw new CFSFileNotFoundException(path);
+    }
+    return node;
+  }
+
+  private Node parentDir(String path) throws CFSException {
+    int i = path.lastIndexOf('/');
+    Node parent = lookup(i <= 0 ? "/" : path.substring(0, i));
+    if (parent == null) {
+      throw new CFSFileNotFoundException(path);
+    }
+    if (!parent.dir) {
+      throw new CFSException("Not a directory: " + path);
+    }
+    return parent;
+  }
+
+  private void remove(String path, Node node) throws CFSException {
+    if (node == root) {
+      throw new CFSException("Cannot remove the root.");
+    }
+    Node parent = parentDir(path);
+    if (!parent.children.remove(name(path), node)) {
+      throw new CFSFileNotFoundException(path);
+    }
+    parent.mtime = now();
+  }
+
+  private static String name(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  private static String[] split(String path) {
+    String p = path.startsWith("/") ? path.substring(1) : path;
+    return p.isEmpty() ? new String[0] : p.split("/");
+  }
+
+  private static long now() {
+    return System.currentTimeMillis() / 1000;
+  }
+}
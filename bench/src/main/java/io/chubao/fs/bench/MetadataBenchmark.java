@@ -0,0 +1,111 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.bench;
+
+import io.chubao.fs.client.util.CFSPathResolver;
+import io.chubao.fs.client.util.FileStatusHelper;
+import io.chubao.fs.client.util.IdNameCache;
+import io.chubao.fs.sdk.CFSStatInfo;
+import io.chubao.fs.sdk.exception.CFSException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metadata operations of ChubaoFileSystem: getFileStatus, listStatus of large directories,
+ * the conversion of a listed stat to a FileStatus and the create/open/close round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+  @Param({"1000", "10000"})
+  public int entries;
+
+  private FileSystem fs;
+  private Path dir;
+  private Path file;
+  private Path roundTrip;
+  private IdNameCache ids;
+  private CFSPathResolver resolver;
+  private Path parent;
+  private CFSStatInfo info;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, CFSException {
+    fs = BenchFileSystems.newInstance();
+    Path base = new Path("/bench/metadata-" + entries);
+    dir = new Path(base, "dir");
+    fs.mkdirs(dir);
+    for (int i = 0; i < entries; i++) {
+      fs.create(new Path(dir, "file-" + i), true).close();
+    }
+    file = new Path(dir, "file-0");
+    roundTrip = new Path(base, "round-trip");
+
+    InMemoryFileStorage storage = new InMemoryFileStorage();
+    storage.open("/file", InMemoryFileStorage.O_WRONLY | InMemoryFileStorage.O_CREAT, 0644, 0, 0).close();
+    ids = new IdNameCache(storage, TimeUnit.MINUTES.toMillis(10));
+    info = storage.list("/")[0];
+    resolver = new CFSPathResolver(URI.create(BenchFileSystems.IN_MEMORY_URI));
+    parent = resolver.qualify(new Path("/dir"), "/dir");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    fs.delete(new Path("/bench/metadata-" + entries), true);
+    fs.close();
+  }
+
+  @Benchmark
+  public FileStatus getFileStatus() throws IOException {
+    return fs.getFileStatus(file);
+  }
+
+  @Benchmark
+  public FileStatus[] listStatus() throws IOException {
+    return fs.listStatus(dir);
+  }
+
+  @Benchmark
+  public FileStatus convert() throws Exception {
+    return FileStatusHelper.convert(ids, resolver.child(parent, info.getName()), info);
+  }
+
+  @Benchmark
+  public void createOpenClose() throws IOException {
+    fs.create(roundTrip, true).close();
+    fs.open(roundTrip).close();
+  }
+}
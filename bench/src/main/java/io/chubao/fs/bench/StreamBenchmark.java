@@ -0,0 +1,116 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.bench;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads through CFSDataInputStream and writes through FSDataOutputStream, with small
+ * and large buffers. Every invocation moves the bytes of one buffer, so the score
+ * and gc.alloc.rate.norm are per read or write call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamBenchmark {
+  private static final long FILE_SIZE = 64L * 1024 * 1024;
+
+  @Param({"4096", "1048576"})
+  public int bufferSize;
+
+  private FileSystem fs;
+  private Path base;
+  private Path readFile;
+  private byte[] buf;
+  private FSDataInputStream in;
+  private FSDataOutputStream out;
+  private long written;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    fs = BenchFileSystems.newInstance();
+    base = new Path("/bench/stream-" + bufferSize);
+    readFile = new Path(base, "read");
+    buf = new byte[bufferSize];
+    new Random(0).nextBytes(buf);
+    try (FSDataOutputStream os = fs.create(readFile, true)) {
+      for (long done = 0; done < FILE_SIZE; done += buf.length) {
+        os.write(buf);
+      }
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void openStreams() throws IOException {
+    in = fs.open(readFile);
+    out = fs.create(new Path(base, "write"), true);
+    written = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeStreams() throws IOException {
+    in.close();
+    out.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    fs.delete(base, true);
+    fs.close();
+  }
+
+  @Benchmark
+  public int read() throws IOException {
+    int size = in.read(buf, 0, buf.length);
+    if (size < 0) {
+      in.seek(0);
+    }
+    return size;
+  }
+
+  @Benchmark
+  public void write() throws IOException {
+    // Restart the file before the in-memory storage runs out of heap.
+    if (written >= FILE_SIZE) {
+      out.close();
+      out = fs.create(new Path(base, "write"), true);
+      written = 0;
+    }
+    out.write(buf, 0, buf.length);
+    written += buf.length;
+  }
+}
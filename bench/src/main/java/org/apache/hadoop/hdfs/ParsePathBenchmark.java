@@ -0,0 +1,83 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package org.apache.hadoop.hdfs;
+
+import io.chubao.fs.bench.BenchFileSystems;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChubaoFileSystem.parsePath, which every operation runs, with qualified, absolute and relative paths.
+ * It is in the package of ChubaoFileSystem to reach parsePath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsePathBenchmark {
+  private ChubaoFileSystem fs;
+  private Path qualified;
+  private Path absolute;
+  private Path relative;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    FileSystem f = BenchFileSystems.newInstance();
+    if (!(f instanceof ChubaoFileSystem)) {
+      f.close();
+      throw new IllegalStateException("Not a ChubaoFileSystem: " + f.getUri());
+    }
+    fs = (ChubaoFileSystem) f;
+    qualified = new Path(fs.getUri().toString() + "/user/bench/warehouse/db/table/part-00000");
+    absolute = new Path("/user/bench/warehouse/db/table/part-00000");
+    relative = new Path("warehouse/db/table/part-00000");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    fs.close();
+  }
+
+  @Benchmark
+  public String qualified() throws IOException {
+    return fs.parsePath(qualified);
+  }
+
+  @Benchmark
+  public String absolute() throws IOException {
+    return fs.parsePath(absolute);
+  }
+
+  @Benchmark
+  public String relative() throws IOException {
+    return fs.parsePath(relative);
+  }
+}
@@ -0,0 +1,18 @@
+#!/bin/env sh
+# Runs against the volume of HADOOP_CONF_DIR, unset it to run against the in-memory storage.
+# Every thread writes a file of FILE_SIZE, the in-memory storage keeps them all on the heap,
+# so it defaults to 4 threads of 64m files instead of 32 threads of 1g files.
+bench_jar=${BENCH_JAR:-bench/target/benchmarks.jar}
+if [ -n "$HADOOP_CONF_DIR" ]; then
+  threads=${THREADS:-32}
+  file_size=${FILE_SIZE:-1g}
+else
+  threads=${THREADS:-4}
+  file_size=${FILE_SIZE:-64m}
+fi
+
+java -cp $bench_jar io.chubao.fs.bench.CFSBench -workload meta -threads $threads -duration 60 > cfs_bench_meta.log 2>&1
+java -cp $bench_jar io.chubao.fs.bench.CFSBench -workload write -threads $threads -duration 60 -fileSize $file_size -bufferSize 1m -keep > cfs_bench_write.log 2>&1
+java -cp $bench_jar io.chubao.fs.bench.CFSBench -workload read -threads $threads -duration 60 -fileSize $file_size -bufferSize 1m -keep > cfs_bench_read.log 2>&1
+java -cp $bench_jar io.chubao.fs.bench.CFSBench -workload randread -threads $threads -duration 60 -fileSize $file_size -bufferSize 4k -keep > cfs_bench_randread.log 2>&1
+java -cp $bench_jar io.chubao.fs.bench.CFSBench -workload pread -threads $threads -duration 60 -fileSize $file_size -bufferSize 4k > cfs_bench_pread.log 2>&1
@@ -0,0 +1,57 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU set of the directories this client knows to exist,
+ * so that create() can skip the mkdirs of the parent.
+ */
+public class DirCache {
+  private final LinkedHashMap<String, Boolean> dirs;
+
+  public DirCache(final int maxEntries) {
+    this.dirs = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public synchronized boolean contains(String dir) {
+    return dirs.get(dir) != null;
+  }
+
+  public synchronized void add(String dir) {
+    dirs.put(dir, Boolean.TRUE);
+  }
+
+  /**
+   * Removes the dir and everything under it, e.g. after the dir is deleted or renamed.
+   */
+  public synchronized void invalidateTree(String dir) {
+    dirs.remove(dir);
+    String prefix = dir.endsWith("/") ? dir : dir + "/";
+    Iterator<String> it = dirs.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
+  }
+}
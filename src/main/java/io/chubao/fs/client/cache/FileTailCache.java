@@ -0,0 +1,134 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.client.stream.ReadCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_READ_TAIL_CACHE_HITS;
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_READ_TAIL_CACHE_MISSES;
+
+/**
+ * A heap cache of the last tailSize bytes of files, where Parquet and ORC keep their footers,
+ * so the tasks opening the same files read the footers once. The tails are cached by (path, mtime, length)
+ * and evicted in LRU order once they take more than the capacity.
+ * A tail is loaded by the first read which falls inside it, the reads starting before the tail are not cached.
+ */
+public class FileTailCache {
+  private final int tailSize;
+  private final long capacity;
+  private final LinkedHashMap<Key, byte[]> tails = new LinkedHashMap<>(16, 0.75f, true);
+  private long used;
+
+  private static class Key {
+    private final String path;
+    private final long mtime;
+    private final long length;
+
+    Key(String path, long mtime, long length) {
+      this.path = path;
+      this.mtime = mtime;
+      this.length = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return mtime == other.mtime && length == other.length && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, mtime, length);
+    }
+  }
+
+  public FileTailCache(int tailSize, long capacity) {
+    this.tailSize = tailSize;
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return the tail of one version of the file.
+   */
+  public ReadCache file(String path, long mtime, long length) {
+    final Key key = new Key(path, mtime, length);
+    final long tailStart = Math.max(0, length - tailSize);
+    return (source, stats) -> (position, buf, off, len) -> {
+      if (position < tailStart || position >= length) {
+        return source.read(position, buf, off, len);
+      }
+      byte[] tail = get(key);
+      if (tail == null) {
+        if (stats != null) {
+          stats.incrementCounter(STREAM_READ_TAIL_CACHE_MISSES);
+        }
+        tail = new byte[(int) (length - tailStart)];
+        int filled = 0;
+        while (filled < tail.length) {
+          int size = source.read(tailStart + filled, tail, filled, tail.length - filled);
+          if (size <= 0) {
+            break;
+          }
+          filled += size;
+        }
+        if (filled < tail.length) {
+          // The file is shorter than when it was opened, read it without the cache.
+          return source.read(position, buf, off, len);
+        }
+        put(key, tail);
+      } else if (stats != null) {
+        stats.incrementCounter(STREAM_READ_TAIL_CACHE_HITS);
+      }
+      int start = (int) (position - tailStart);
+      int size = Math.min(len, tail.length - start);
+      System.arraycopy(tail, start, buf, off, size);
+      return size;
+    };
+  }
+
+  public synchronized long getUsed() {
+    return used;
+  }
+
+  public synchronized int size() {
+    return tails.size();
+  }
+
+  private synchronized byte[] get(Key key) {
+    return tails.get(key);
+  }
+
+  private synchronized void put(Key key, byte[] tail) {
+    if (tail.length > capacity) {
+      return;
+    }
+    byte[] old = tails.put(key, tail);
+    if (old != null) {
+      used -= old.length;
+    }
+    used += tail.length;
+    Iterator<byte[]> it = tails.values().iterator();
+    while (used > capacity && it.hasNext()) {
+      used -= it.next().length;
+      it.remove();
+    }
+  }
+}
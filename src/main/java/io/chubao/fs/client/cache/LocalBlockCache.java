@@ -0,0 +1,441 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.client.stream.PositionReader;
+import io.chubao.fs.client.stream.ReadCache;
+import io.chubao.fs.client.util.DaemonThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_READ_BLOCK_CACHE_HITS;
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_READ_BLOCK_CACHE_MISSES;
+
+/**
+ * A cache of file blocks on a local disk, shared by the file systems of the process on the same directory.
+ * Every block of blockSize bytes is one local file, named by the hash of the file, the mtime and length of
+ * the file, the block size and the block index, so the blocks of an older version of a file are never read.
+ * The hits are positional reads of the block file, whose channel stays open while the block is cached or read.
+ * A miss reads only the requested range from the source, and loads the whole block in the background,
+ * one load per block at a time.
+ * The blocks are evicted in LRU order once they take more than the capacity, and the index is rebuilt
+ * from the directory when the process starts again.
+ * A directory is used by one process at a time, the other processes run without the cache.
+ */
+public class LocalBlockCache {
+  private static final Log log = LogFactory.getLog(LocalBlockCache.class);
+  private static final Map<String, LocalBlockCache> registry = new HashMap<>();
+  private static final String LOCK_FILE = ".lock";
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private final File dir;
+  private final long capacity;
+  private final int blockSize;
+  /** Holds the lock on the directory for the life of the process. */
+  private final FileChannel lockChannel;
+  private final ExecutorService loader;
+  private final int maxLoads;
+  private final ConcurrentHashMap<String, Boolean> loading = new ConcurrentHashMap<>();
+  private final AtomicLong tmpIndex = new AtomicLong(0);
+  private final LinkedHashMap<String, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+  private long used;
+
+  private static class Block {
+    private final File file;
+    private final int length;
+    /** Opened by the first hit, closed once the block is evicted and no read uses it. */
+    private FileChannel channel;
+    /** The reference of the cache and the reads in progress, guarded by the cache. */
+    private int refs = 1;
+
+    Block(File file, int length) {
+      this.file = file;
+      this.length = length;
+    }
+
+    synchronized FileChannel channel() throws IOException {
+      if (channel == null) {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      }
+      return channel;
+    }
+
+    synchronized void closeChannel() {
+      if (channel == null) {
+        return;
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.debug("Failed to close the cached block " + file + ".", e);
+      }
+      channel = null;
+    }
+  }
+
+  /**
+   * The blocks of one version of a file.
+   */
+  public class CachedFile implements ReadCache {
+    private final String prefix;
+    private final long length;
+
+    CachedFile(String prefix, long length) {
+      this.prefix = prefix;
+      this.length = length;
+    }
+
+    @Override
+    public PositionReader reader(PositionReader source, IOStatisticsStore stats) {
+      return reader(source, source, stats);
+    }
+
+    /**
+     * @return a reader which serves the cached blocks within the length, one block at most per read,
+     * and the other reads from the source while the loader loads the missed blocks in the background.
+     */
+    @Override
+    public PositionReader reader(PositionReader source, PositionReader loader, IOStatisticsStore stats) {
+      return (position, buf, off, len) -> {
+        if (position >= length) {
+          return source.read(position, buf, off, len);
+        }
+        long index = position / blockSize;
+        long start = index * blockSize;
+        int blockLen = (int) Math.min(blockSize, length - start);
+        int offset = (int) (position - start);
+        int size = Math.min(len, blockLen - offset);
+        String name = prefix + index;
+
+        if (read(name, offset, buf, off, size)) {
+          count(stats, STREAM_READ_BLOCK_CACHE_HITS);
+          return size;
+        }
+        count(stats, STREAM_READ_BLOCK_CACHE_MISSES);
+        load(name, start, blockLen, loader);
+        // Stop at the end of the block, so the next read loads the next block.
+        return source.read(position, buf, off, size);
+      };
+    }
+  }
+
+  private LocalBlockCache(File dir, long capacity, int blockSize, int loadThreads, FileChannel lockChannel) {
+    this.dir = dir;
+    this.capacity = capacity;
+    this.blockSize = blockSize;
+    this.lockChannel = lockChannel;
+    this.loader = DaemonThreadFactory.newPool("cfs-block-cache", loadThreads);
+    this.maxLoads = loadThreads * 16;
+  }
+
+  /**
+   * Returns the cache of the directory, opening it if no file system of the process uses it.
+   * The other options are taken from the first file system.
+   *
+   * @param loadThreads the threads loading the missed blocks.
+   * @return the cache, or null if another process uses the directory.
+   */
+  public static LocalBlockCache get(String dir, long capacity, int blockSize, int loadThreads) throws IOException {
+    if (capacity <= 0 || blockSize <= 0 || loadThreads <= 0) {
+      throw new IllegalArgumentException("Invalid block cache capacity " + capacity + ", block size " + blockSize
+          + " or load threads " + loadThreads);
+    }
+    File canonical = new File(dir).getCanonicalFile();
+    synchronized (registry) {
+      LocalBlockCache cache = registry.get(canonical.getPath());
+      if (cache != null) {
+        return cache;
+      }
+      if (!canonical.isDirectory() && !canonical.mkdirs()) {
+        throw new IOException("Failed to create the block cache directory " + canonical);
+      }
+      FileChannel channel = FileChannel.open(new File(canonical, LOCK_FILE).toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        channel.close();
+        log.warn("The block cache directory " + canonical + " is used by another process, run without the cache.");
+        return null;
+      }
+      cache = new LocalBlockCache(canonical, capacity, blockSize, loadThreads, channel);
+      cache.rebuild();
+      registry.put(canonical.getPath(), cache);
+      return cache;
+    }
+  }
+
+  /**
+   * @param file the file name, unique across volumes.
+   */
+  public CachedFile file(String file, long mtime, long length) {
+    return new CachedFile(hash(file) + "-" + mtime + "-" + length + "-" + blockSize + "-", length);
+  }
+
+  /**
+   * Unlocks the directory, the blocks stay on the disk for the next process. Only for tests,
+   * the cache is shared by every file system of the process and lives as long as the process.
+   */
+  void close() throws IOException {
+    synchronized (registry) {
+      registry.remove(dir.getPath());
+      loader.shutdownNow();
+      lockChannel.close();
+    }
+    synchronized (this) {
+      for (Block block : blocks.values()) {
+        block.closeChannel();
+      }
+    }
+  }
+
+  public synchronized long getUsed() {
+    return used;
+  }
+
+  public synchronized int getBlockCount() {
+    return blocks.size();
+  }
+
+  /**
+   * @return true if a block is being loaded.
+   */
+  boolean isLoading() {
+    return !loading.isEmpty();
+  }
+
+  /**
+   * Reads from the channel of the block, the channel stays readable while it is open even if the block
+   * is evicted and its file deleted.
+   *
+   * @return false if the block is not cached.
+   */
+  private boolean read(String name, int offset, byte[] buf, int off, int len) {
+    Block block;
+    synchronized (this) {
+      block = blocks.get(name);
+      if (block == null) {
+        return false;
+      }
+      block.refs++;
+    }
+    try {
+      FileChannel channel = block.channel();
+      ByteBuffer dst = ByteBuffer.wrap(buf, off, len);
+      while (dst.hasRemaining()) {
+        if (channel.read(dst, offset + len - dst.remaining()) < 0) {
+          throw new IOException("The cached block is shorter than " + block.length + " bytes.");
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      log.warn("Failed to read the cached block " + block.file + ", drop it.", e);
+      remove(name, block);
+      return false;
+    } finally {
+      release(block);
+    }
+  }
+
+  /**
+   * Drops a reference of the block, the last one closes its channel.
+   */
+  private void release(Block block) {
+    synchronized (this) {
+      if (--block.refs > 0) {
+        return;
+      }
+    }
+    block.closeChannel();
+  }
+
+  /**
+   * Loads the block in the background unless it is loading, or too many blocks are loading.
+   */
+  private void load(String name, long start, int blockLen, PositionReader source) {
+    if (loading.size() >= maxLoads || loading.putIfAbsent(name, Boolean.TRUE) != null) {
+      return;
+    }
+    try {
+      loader.execute(() -> {
+        try {
+          synchronized (this) {
+            if (blocks.containsKey(name)) {
+              return;
+            }
+          }
+          byte[] block = new byte[blockLen];
+          int filled = 0;
+          while (filled < blockLen) {
+            int n = source.read(start + filled, block, filled, blockLen - filled);
+            if (n <= 0) {
+              break;
+            }
+            filled += n;
+          }
+          // A file shorter than when it was opened is not cached.
+          if (filled == blockLen) {
+            put(name, block);
+          }
+        } catch (IOException | RuntimeException e) {
+          if (log.isDebugEnabled()) {
+            log.debug("Failed to load the block " + name + ".", e);
+          }
+        } finally {
+          loading.remove(name);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      loading.remove(name);
+    }
+  }
+
+  private void put(String name, byte[] data) {
+    File file = new File(dir, name);
+    File tmp = new File(dir, name + "." + tmpIndex.incrementAndGet() + TMP_SUFFIX);
+    try {
+      try (FileOutputStream out = new FileOutputStream(tmp)) {
+        out.write(data);
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      log.warn("Failed to cache the block " + name + ".", e);
+      tmp.delete();
+      return;
+    }
+    synchronized (this) {
+      Block old = blocks.put(name, new Block(file, data.length));
+      if (old != null) {
+        used -= old.length;
+        release(old);
+      }
+      used += data.length;
+      evict();
+    }
+  }
+
+  private synchronized void remove(String name, Block block) {
+    if (blocks.remove(name, block)) {
+      used -= block.length;
+      block.file.delete();
+      release(block);
+    }
+  }
+
+  /**
+   * The caller holds the lock of the cache.
+   */
+  private void evict() {
+    Iterator<Block> it = blocks.values().iterator();
+    while (used > capacity && it.hasNext()) {
+      Block block = it.next();
+      it.remove();
+      used -= block.length;
+      block.file.delete();
+      release(block);
+    }
+  }
+
+  /**
+   * Indexes the blocks left by the last process, the least recently modified first.
+   * The temporary files and the blocks of another block size are deleted.
+   */
+  private synchronized void rebuild() {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      String name = file.getName();
+      if (name.equals(LOCK_FILE)) {
+        continue;
+      }
+      long expected = expectedLength(name);
+      if (expected < 0 || file.length() != expected) {
+        file.delete();
+        continue;
+      }
+      blocks.put(name, new Block(file, (int) expected));
+      used += expected;
+    }
+    evict();
+    log.info("Loaded the block cache " + dir + ": " + blocks.size() + " blocks, " + used + " bytes.");
+  }
+
+  /**
+   * @return the length of the block named by hash-mtime-length-blockSize-index,
+   * or -1 if the name is not a block of this block size.
+   */
+  private long expectedLength(String name) {
+    String[] parts = name.split("-");
+    if (parts.length != 5) {
+      return -1;
+    }
+    try {
+      long length = Long.parseLong(parts[2]);
+      int size = Integer.parseInt(parts[3]);
+      long index = Long.parseLong(parts[4]);
+      long start = index * blockSize;
+      if (size != blockSize || index < 0 || start >= length) {
+        return -1;
+      }
+      return Math.min(blockSize, length - start);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void count(IOStatisticsStore stats, String key) {
+    if (stats != null) {
+      stats.incrementCounter(key);
+    }
+  }
+
+  private static String hash(String file) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
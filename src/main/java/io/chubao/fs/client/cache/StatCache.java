@@ -0,0 +1,171 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.sdk.CFSStatInfo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded LRU cache of stat results by path, every entry expires after the ttl.
+ * A null info is a negative entry, the path did not exist when it was cached.
+ * Only the changes made by this client invalidate the entries.
+ * A stat racing with an invalidation is not cached: the caller takes the {@link #generation(String)}
+ * of the path before the stat, and the put is dropped if the path was invalidated since.
+ */
+public class StatCache {
+  private static final int GENERATION_STRIPES = 256;
+
+  private final long ttlNanos;
+  private final boolean cacheNegative;
+  private final LinkedHashMap<String, Entry> entries;
+  /** Bumped when a path of the stripe is invalidated. */
+  private final long[] generations = new long[GENERATION_STRIPES];
+  /** Bumped when a whole tree is invalidated, which changes the generation of every path. */
+  private long epoch;
+  private long hits;
+  private long misses;
+
+  public static class Entry {
+    private final CFSStatInfo info;
+    private final long expireAt;
+
+    Entry(CFSStatInfo info, long expireAt) {
+      this.info = info;
+      this.expireAt = expireAt;
+    }
+
+    public CFSStatInfo getInfo() {
+      return info;
+    }
+  }
+
+  public StatCache(final int maxEntries, long ttlMs, boolean cacheNegative) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    this.cacheNegative = cacheNegative;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, StatCache.Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return the entry of the path, or null if the path is not cached or the entry is expired.
+   */
+  public synchronized Entry get(String path) {
+    Entry entry = entries.get(path);
+    if (entry != null && entry.expireAt - System.nanoTime() <= 0) {
+      entries.remove(path);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return entry;
+  }
+
+  /**
+   * @return the generation of the path, which changes whenever the path is invalidated.
+   */
+  public synchronized long generation(String path) {
+    return epoch + generations[stripe(path)];
+  }
+
+  /**
+   * Caches the stat of the path unless the path was invalidated since the generation was taken.
+   *
+   * @param generation the {@link #generation(String)} of the path taken before the stat.
+   */
+  public synchronized void put(String path, CFSStatInfo info, long generation) {
+    if (info == null && !cacheNegative) {
+      return;
+    }
+    if (generation(path) != generation) {
+      return;
+    }
+    entries.put(path, new Entry(info, System.nanoTime() + ttlNanos));
+  }
+
+  /**
+   * Removes the path and its parent, whose mtime changes with the path.
+   */
+  public synchronized void invalidate(String path) {
+    remove(path);
+    String parent = parentOf(path);
+    if (parent != null) {
+      remove(parent);
+    }
+  }
+
+  /**
+   * Removes the path and all its ancestors, e.g. after mkdirs.
+   */
+  public synchronized void invalidateWithAncestors(String path) {
+    for (String p = path; p != null; p = parentOf(p)) {
+      remove(p);
+    }
+  }
+
+  /**
+   * Removes the path, its ancestors and everything under it.
+   */
+  public synchronized void invalidateTree(String path) {
+    epoch++;
+    invalidateWithAncestors(path);
+    String prefix = path.endsWith("/") ? path : path + "/";
+    Iterator<String> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    epoch++;
+    entries.clear();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private void remove(String path) {
+    entries.remove(path);
+    generations[stripe(path)]++;
+  }
+
+  private static int stripe(String path) {
+    return (path.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+  }
+
+  private static String parentOf(String path) {
+    int index = path.lastIndexOf('/');
+    if (index < 0 || path.length() == 1) {
+      return null;
+    }
+    return index == 0 ? "/" : path.substring(0, index);
+  }
+}
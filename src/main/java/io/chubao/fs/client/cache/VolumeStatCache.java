@@ -0,0 +1,89 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.client.util.VolumeStat;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the stat of the volume. The first call fetches the stat, afterwards a stat older than
+ * the refresh interval is still returned while one refresh runs in the background, so polling
+ * callers never wait for the master and never send it more than one request per interval.
+ */
+public class VolumeStatCache {
+  private static final Log log = LogFactory.getLog(VolumeStatCache.class);
+
+  public interface Fetcher {
+    VolumeStat fetch() throws IOException;
+  }
+
+  private final Fetcher fetcher;
+  private final ExecutorService executor;
+  private final long refreshNanos;
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+  private volatile VolumeStat stat;
+  private volatile long fetchedAt;
+
+  public VolumeStatCache(Fetcher fetcher, ExecutorService executor, long refreshMs) {
+    this.fetcher = fetcher;
+    this.executor = executor;
+    this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMs);
+  }
+
+  public VolumeStat get() throws IOException {
+    VolumeStat current = stat;
+    if (current == null) {
+      synchronized (this) {
+        if (stat == null) {
+          refresh();
+        }
+        return stat;
+      }
+    }
+    if (System.nanoTime() - fetchedAt >= refreshNanos && refreshing.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::refreshInBackground);
+      } catch (RejectedExecutionException e) {
+        refreshing.set(false);
+      }
+    }
+    return current;
+  }
+
+  private void refresh() throws IOException {
+    VolumeStat fetched = fetcher.fetch();
+    fetchedAt = System.nanoTime();
+    stat = fetched;
+  }
+
+  private void refreshInBackground() {
+    try {
+      refresh();
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to refresh the volume stat, retry in "
+          + TimeUnit.NANOSECONDS.toMillis(refreshNanos) + "ms.", e);
+      fetchedAt = System.nanoTime();
+    } finally {
+      refreshing.set(false);
+    }
+  }
+}
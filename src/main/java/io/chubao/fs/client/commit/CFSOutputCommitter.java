@@ -0,0 +1,307 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.commit;
+
+import io.chubao.fs.client.util.DaemonThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.ChubaoFileSystem;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.PathOutputCommitter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An output committer which relies on the atomic rename of directories. The layout is the one of
+ * FileOutputCommitter v1, but a task is committed by renaming its attempt directory, and the job
+ * by moving the entries of every committed task into the output in parallel. An entry is moved
+ * with one rename, only a directory which already exists in the output is merged entry by entry,
+ * so the commit costs scale with the tasks and the new directories, not with the files.
+ * <p>
+ * Bind it to the cfs scheme with
+ * mapreduce.outputcommitter.factory.scheme.cfs=io.chubao.fs.client.commit.CFSOutputCommitterFactory.
+ */
+public class CFSOutputCommitter extends PathOutputCommitter {
+  private static final Log log = LogFactory.getLog(CFSOutputCommitter.class);
+
+  public static final String COMMITTER_THREADS_KEY = "fs.cfs.committer.threads";
+  public static final int COMMITTER_THREADS_DEFAULT = 8;
+
+  private final Path outputPath;
+  private final FileSystem fs;
+  private final Path workPath;
+
+  public CFSOutputCommitter(Path outputPath, TaskAttemptContext context) throws IOException {
+    super(outputPath, context);
+    this.fs = outputPath.getFileSystem(context.getConfiguration());
+    this.outputPath = fs.makeQualified(outputPath);
+    this.workPath = getTaskAttemptPath(context);
+  }
+
+  public CFSOutputCommitter(Path outputPath, JobContext context) throws IOException {
+    super(outputPath, context);
+    this.fs = outputPath.getFileSystem(context.getConfiguration());
+    this.outputPath = fs.makeQualified(outputPath);
+    this.workPath = null;
+  }
+
+  @Override
+  public Path getOutputPath() {
+    return outputPath;
+  }
+
+  @Override
+  public Path getWorkPath() {
+    return workPath;
+  }
+
+  private Path getPendingPath() {
+    return new Path(outputPath, FileOutputCommitter.PENDING_DIR_NAME);
+  }
+
+  private Path getJobAttemptPath(int appAttemptId) {
+    return new Path(getPendingPath(), String.valueOf(appAttemptId));
+  }
+
+  private Path getJobAttemptPath(JobContext context) {
+    return getJobAttemptPath(getAppAttemptId(context));
+  }
+
+  private Path getTaskAttemptPath(TaskAttemptContext context) {
+    return new Path(new Path(getJobAttemptPath(context), FileOutputCommitter.PENDING_DIR_NAME),
+        String.valueOf(context.getTaskAttemptID()));
+  }
+
+  private Path getCommittedTaskPath(int appAttemptId, TaskAttemptContext context) {
+    return new Path(getJobAttemptPath(appAttemptId), String.valueOf(context.getTaskAttemptID().getTaskID()));
+  }
+
+  private static int getAppAttemptId(JobContext context) {
+    return context.getConfiguration().getInt(MRJobConfig.APPLICATION_ATTEMPT_ID, 0);
+  }
+
+  @Override
+  public void setupJob(JobContext context) throws IOException {
+    Path jobAttemptPath = getJobAttemptPath(context);
+    if (!fs.mkdirs(jobAttemptPath)) {
+      throw new IOException("Failed to mkdirs: " + jobAttemptPath);
+    }
+  }
+
+  @Override
+  public void setupTask(TaskAttemptContext context) {
+    // The attempt directory is created by the first file of the task.
+  }
+
+  @Override
+  public boolean needsTaskCommit(TaskAttemptContext context) throws IOException {
+    return fs.exists(getTaskAttemptPath(context));
+  }
+
+  @Override
+  public void commitTask(TaskAttemptContext context) throws IOException {
+    Path attemptPath = getTaskAttemptPath(context);
+    Path committedPath = getCommittedTaskPath(getAppAttemptId(context), context);
+    try {
+      rename(attemptPath, committedPath);
+    } catch (FileNotFoundException e) {
+      log.warn("No output to commit of " + context.getTaskAttemptID());
+      return;
+    } catch (IOException e) {
+      // An earlier attempt of the task has been committed, replace it.
+      if (!fs.exists(committedPath)) {
+        throw e;
+      }
+      fs.delete(committedPath, true);
+      rename(attemptPath, committedPath);
+    }
+    log.info("Committed " + context.getTaskAttemptID() + " to " + committedPath);
+  }
+
+  @Override
+  public void abortTask(TaskAttemptContext context) throws IOException {
+    Path attemptPath = getTaskAttemptPath(context);
+    if (!fs.delete(attemptPath, true) && fs.exists(attemptPath)) {
+      log.warn("Failed to delete " + attemptPath);
+    }
+  }
+
+  @Override
+  public boolean isRecoverySupported() {
+    return true;
+  }
+
+  @Override
+  public void recoverTask(TaskAttemptContext context) throws IOException {
+    int appAttemptId = getAppAttemptId(context);
+    if (appAttemptId == 0) {
+      return;
+    }
+    Path previous = getCommittedTaskPath(appAttemptId - 1, context);
+    try {
+      rename(previous, getCommittedTaskPath(appAttemptId, context));
+      log.info("Recovered " + previous);
+    } catch (FileNotFoundException e) {
+      log.warn(previous + " not found, the task output may be lost.");
+    }
+  }
+
+  @Override
+  public void commitJob(JobContext context) throws IOException {
+    long start = System.nanoTime();
+    Path jobAttemptPath = getJobAttemptPath(context);
+    List<FileStatus> tasks = new ArrayList<>();
+    try {
+      for (FileStatus status : fs.listStatus(jobAttemptPath)) {
+        if (!status.getPath().getName().equals(FileOutputCommitter.PENDING_DIR_NAME)) {
+          tasks.add(status);
+        }
+      }
+    } catch (FileNotFoundException e) {
+      log.warn("No committed task in " + jobAttemptPath);
+    }
+
+    mergeTasks(tasks, context.getConfiguration().getInt(COMMITTER_THREADS_KEY, COMMITTER_THREADS_DEFAULT));
+    cleanup();
+    if (context.getConfiguration().getBoolean(FileOutputCommitter.SUCCESSFUL_JOB_OUTPUT_DIR_MARKER, true)) {
+      fs.create(new Path(outputPath, FileOutputCommitter.SUCCEEDED_FILE_NAME), true).close();
+    }
+    log.info("Committed " + tasks.size() + " tasks to " + outputPath + " in "
+        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+  }
+
+  private void mergeTasks(List<FileStatus> tasks, int threads) throws IOException {
+    if (tasks.isEmpty()) {
+      fs.mkdirs(outputPath);
+      return;
+    }
+    ExecutorService pool = DaemonThreadFactory.newPool("cfs-committer", Math.max(1, Math.min(threads, tasks.size())));
+    List<Future<Void>> futures = new ArrayList<>();
+    try {
+      fs.mkdirs(outputPath);
+      for (final FileStatus task : tasks) {
+        futures.add(pool.submit(() -> {
+          for (FileStatus entry : fs.listStatus(task.getPath())) {
+            merge(entry, new Path(outputPath, entry.getPath().getName()));
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while committing to " + outputPath);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Failed to commit to " + outputPath, e.getCause());
+    } finally {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Moves src to dst with one rename if dst does not exist. Otherwise a directory is merged
+   * into the existing directory, and anything else replaces dst.
+   */
+  private void merge(FileStatus src, Path dst) throws IOException {
+    try {
+      rename(src.getPath(), dst);
+      return;
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      FileStatus dstStatus;
+      try {
+        dstStatus = fs.getFileStatus(dst);
+      } catch (FileNotFoundException notFound) {
+        throw e;
+      }
+      if (src.isDirectory() && dstStatus.isDirectory()) {
+        for (FileStatus child : fs.listStatus(src.getPath())) {
+          merge(child, new Path(dst, child.getPath().getName()));
+        }
+        return;
+      }
+    }
+    fs.delete(dst, true);
+    rename(src.getPath(), dst);
+  }
+
+  /**
+   * Renames with one call on ChubaoFileSystem. On other file systems, rename moves a directory
+   * into an existing destination, so the destination is checked first.
+   */
+  private void rename(Path src, Path dst) throws IOException {
+    if (fs instanceof ChubaoFileSystem) {
+      ((ChubaoFileSystem) fs).renameOrThrow(src, dst);
+      return;
+    }
+    if (fs.exists(dst)) {
+      throw new FileAlreadyExistsException(dst.toString());
+    }
+    if (!fs.rename(src, dst)) {
+      if (!fs.exists(src)) {
+        throw new FileNotFoundException(src.toString());
+      }
+      throw new IOException("Failed to rename " + src + " to " + dst);
+    }
+  }
+
+  private void cleanup() throws IOException {
+    Path pending = getPendingPath();
+    if (!fs.delete(pending, true) && fs.exists(pending)) {
+      log.warn("Failed to delete " + pending);
+    }
+  }
+
+  @Override
+  public void abortJob(JobContext context, JobStatus.State state) throws IOException {
+    cleanup();
+  }
+
+  @Override
+  @Deprecated
+  public void cleanupJob(JobContext context) throws IOException {
+    cleanup();
+  }
+
+  @Override
+  public String toString() {
+    return "CFSOutputCommitter{outputPath=" + outputPath + ", workPath=" + workPath + "}";
+  }
+}
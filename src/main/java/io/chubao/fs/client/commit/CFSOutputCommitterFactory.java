@@ -0,0 +1,32 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.commit;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.PathOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.PathOutputCommitterFactory;
+
+import java.io.IOException;
+
+/**
+ * Creates the {@link CFSOutputCommitter} of the jobs writing to the cfs scheme.
+ */
+public class CFSOutputCommitterFactory extends PathOutputCommitterFactory {
+  @Override
+  public PathOutputCommitter createOutputCommitter(Path outputPath, TaskAttemptContext context)
+      throws IOException {
+    return new CFSOutputCommitter(outputPath, context);
+  }
+}
@@ -19,7 +19,9 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 
 public class CFSConfig implements Serializable {
@@ -39,11 +41,99 @@ public class CFSConfig implements Serializable {
   private final boolean CFS_FOLLOWER_READ_DEFAULT = false;
 
   private final String CFS_LIBSDK_PATH_KEY = "cfs.libsdk.path";
+  private final String CFS_STORAGE_FACTORY_KEY = "cfs.storage.factory";
 
   private final String CFS_USER_HOME_DIR_PREFIX_KEY = "dfs.user.home.dir.prefix";
   private final String CFS_USER_HOME_DIR_PREFIX_DEFAULT = "/user";
   private final String CFS_CURRENT_USE_KEY = "cfs.current.user.name";
 
+  private final String CFS_IO_THREADS_KEY = "cfs.io.threads";
+  private final int CFS_IO_THREADS_DEFAULT = 16;
+
+  private final String CFS_READAHEAD_ENABLE_KEY = "cfs.readahead.enable";
+  private final boolean CFS_READAHEAD_ENABLE_DEFAULT = true;
+  private final String CFS_READAHEAD_ASYNC_KEY = "cfs.readahead.async";
+  private final boolean CFS_READAHEAD_ASYNC_DEFAULT = true;
+  private final String CFS_READAHEAD_MIN_SIZE_KEY = "cfs.readahead.min.size";
+  private final int CFS_READAHEAD_MIN_SIZE_DEFAULT = 128 * 1024;
+  private final String CFS_READAHEAD_MAX_SIZE_KEY = "cfs.readahead.max.size";
+  private final int CFS_READAHEAD_MAX_SIZE_DEFAULT = 4 * 1024 * 1024;
+
+  private final String CFS_VECTORED_READ_MIN_SEEK_KEY = "cfs.vectored.read.min.seek";
+  private final int CFS_VECTORED_READ_MIN_SEEK_DEFAULT = 4 * 1024;
+  private final String CFS_VECTORED_READ_MAX_MERGED_SIZE_KEY = "cfs.vectored.read.max.merged.size";
+  private final int CFS_VECTORED_READ_MAX_MERGED_SIZE_DEFAULT = 1024 * 1024;
+
+  private final String CFS_WRITE_BEHIND_ENABLE_KEY = "cfs.write.behind.enable";
+  private final boolean CFS_WRITE_BEHIND_ENABLE_DEFAULT = true;
+  private final String CFS_WRITE_BUFFER_SIZE_KEY = "cfs.write.buffer.size";
+  private final int CFS_WRITE_BUFFER_SIZE_DEFAULT = 4 * 1024 * 1024;
+  private final String CFS_WRITE_MAX_INFLIGHT_KEY = "cfs.write.max.inflight";
+  private final int CFS_WRITE_MAX_INFLIGHT_DEFAULT = 4;
+
+  private final String CFS_BLOCK_CACHE_ENABLE_KEY = "cfs.block.cache.enable";
+  private final boolean CFS_BLOCK_CACHE_ENABLE_DEFAULT = false;
+  private final String CFS_BLOCK_CACHE_DIR_KEY = "cfs.block.cache.dir";
+  private final String CFS_BLOCK_CACHE_DIR_DEFAULT = System.getProperty("java.io.tmpdir") + "/cfs-block-cache";
+  private final String CFS_BLOCK_CACHE_CAPACITY_KEY = "cfs.block.cache.capacity";
+  private final long CFS_BLOCK_CACHE_CAPACITY_DEFAULT = 10L * 1024 * 1024 * 1024;
+  private final String CFS_BLOCK_CACHE_BLOCK_SIZE_KEY = "cfs.block.cache.block.size";
+  private final int CFS_BLOCK_CACHE_BLOCK_SIZE_DEFAULT = 1024 * 1024;
+  private final String CFS_BLOCK_CACHE_LOAD_THREADS_KEY = "cfs.block.cache.load.threads";
+  private final int CFS_BLOCK_CACHE_LOAD_THREADS_DEFAULT = 4;
+
+  private final String CFS_TAIL_CACHE_ENABLE_KEY = "cfs.tail.cache.enable";
+  private final boolean CFS_TAIL_CACHE_ENABLE_DEFAULT = false;
+  private final String CFS_TAIL_CACHE_TAIL_SIZE_KEY = "cfs.tail.cache.tail.size";
+  private final int CFS_TAIL_CACHE_TAIL_SIZE_DEFAULT = 256 * 1024;
+  private final String CFS_TAIL_CACHE_CAPACITY_KEY = "cfs.tail.cache.capacity";
+  private final long CFS_TAIL_CACHE_CAPACITY_DEFAULT = 64L * 1024 * 1024;
+
+  private final String CFS_CACHE_MIN_FILE_AGE_KEY = "cfs.cache.min.file.age.s";
+  private final int CFS_CACHE_MIN_FILE_AGE_DEFAULT = 60;
+
+  private final String CFS_STAT_CACHE_ENABLE_KEY = "cfs.stat.cache.enable";
+  private final boolean CFS_STAT_CACHE_ENABLE_DEFAULT = false;
+  private final String CFS_STAT_CACHE_SIZE_KEY = "cfs.stat.cache.size";
+  private final int CFS_STAT_CACHE_SIZE_DEFAULT = 10000;
+  private final String CFS_STAT_CACHE_TTL_KEY = "cfs.stat.cache.ttl.ms";
+  private final int CFS_STAT_CACHE_TTL_DEFAULT = 1000;
+  private final String CFS_STAT_CACHE_NEGATIVE_KEY = "cfs.stat.cache.negative";
+  private final boolean CFS_STAT_CACHE_NEGATIVE_DEFAULT = true;
+  private final String CFS_STAT_CACHE_BYPASS_OPS_KEY = "cfs.stat.cache.bypass.ops";
+
+  private final String CFS_DIR_CACHE_SIZE_KEY = "cfs.dir.cache.size";
+  private final int CFS_DIR_CACHE_SIZE_DEFAULT = 10000;
+
+  private final String CFS_ID_CACHE_TTL_KEY = "cfs.id.cache.ttl.ms";
+  private final int CFS_ID_CACHE_TTL_DEFAULT = 10 * 60 * 1000;
+
+  private final String CFS_DELETE_PARALLEL_ENABLE_KEY = "cfs.delete.parallel.enable";
+  private final boolean CFS_DELETE_PARALLEL_ENABLE_DEFAULT = true;
+  private final String CFS_DELETE_PARALLELISM_KEY = "cfs.delete.parallelism";
+  private final int CFS_DELETE_PARALLELISM_DEFAULT = 16;
+  private final String CFS_DELETE_PARALLEL_THRESHOLD_KEY = "cfs.delete.parallel.threshold";
+  private final int CFS_DELETE_PARALLEL_THRESHOLD_DEFAULT = 1000;
+  private final String CFS_DELETE_PROGRESS_INTERVAL_KEY = "cfs.delete.progress.interval";
+  private final int CFS_DELETE_PROGRESS_INTERVAL_DEFAULT = 100000;
+
+  private final String CFS_LIST_BATCH_SIZE_KEY = "cfs.list.batch.size";
+  private final int CFS_LIST_BATCH_SIZE_DEFAULT = 1000;
+  private final String CFS_LIST_PREFETCH_KEY = "cfs.list.prefetch";
+  private final boolean CFS_LIST_PREFETCH_DEFAULT = true;
+
+  private final String CFS_CHECKSUM_ENABLE_KEY = "cfs.checksum.enable";
+  private final boolean CFS_CHECKSUM_ENABLE_DEFAULT = true;
+  private final String CFS_CHECKSUM_BYTES_PER_CRC_KEY = "cfs.checksum.bytes.per.crc";
+  private final int CFS_CHECKSUM_BYTES_PER_CRC_DEFAULT = 512;
+  private final String CFS_CHECKSUM_CACHE_SIZE_KEY = "cfs.checksum.cache.size";
+  private final int CFS_CHECKSUM_CACHE_SIZE_DEFAULT = 1000;
+
+  private final String CFS_VOLUME_STAT_REFRESH_KEY = "cfs.volume.stat.refresh.ms";
+  private final int CFS_VOLUME_STAT_REFRESH_DEFAULT = 30 * 1000;
+  private final String CFS_MASTER_HTTP_TIMEOUT_KEY = "cfs.master.http.timeout.ms";
+  private final int CFS_MASTER_HTTP_TIMEOUT_DEFAULT = 5000;
+
   private Map<String, String> configs = new HashMap<>();
 
   public CFSConfig() {
@@ -85,6 +175,10 @@ public class CFSConfig implements Serializable {
     return configs.getOrDefault(CFS_LIBSDK_PATH_KEY, null);
   }
 
+  public String getStorageFactory() {
+    return configs.get(CFS_STORAGE_FACTORY_KEY);
+  }
+
   public String getUserHomePrefix() {
     return configs.getOrDefault(CFS_USER_HOME_DIR_PREFIX_KEY, CFS_USER_HOME_DIR_PREFIX_DEFAULT);
   }
@@ -105,6 +199,192 @@ public class CFSConfig implements Serializable {
     configs.put(CFS_CURRENT_USE_KEY, userName);
   }
 
+  public int getIOThreads() {
+    return getInt(CFS_IO_THREADS_KEY, CFS_IO_THREADS_DEFAULT);
+  }
+
+  public boolean getReadAheadEnable() {
+    return getBoolean(CFS_READAHEAD_ENABLE_KEY, CFS_READAHEAD_ENABLE_DEFAULT);
+  }
+
+  public boolean getReadAheadAsync() {
+    return getBoolean(CFS_READAHEAD_ASYNC_KEY, CFS_READAHEAD_ASYNC_DEFAULT);
+  }
+
+  public int getReadAheadMinSize() {
+    return getInt(CFS_READAHEAD_MIN_SIZE_KEY, CFS_READAHEAD_MIN_SIZE_DEFAULT);
+  }
+
+  public int getReadAheadMaxSize() {
+    return getInt(CFS_READAHEAD_MAX_SIZE_KEY, CFS_READAHEAD_MAX_SIZE_DEFAULT);
+  }
+
+  public int getVectoredReadMinSeek() {
+    return getInt(CFS_VECTORED_READ_MIN_SEEK_KEY, CFS_VECTORED_READ_MIN_SEEK_DEFAULT);
+  }
+
+  public int getVectoredReadMaxMergedSize() {
+    return getInt(CFS_VECTORED_READ_MAX_MERGED_SIZE_KEY, CFS_VECTORED_READ_MAX_MERGED_SIZE_DEFAULT);
+  }
+
+  public boolean getWriteBehindEnable() {
+    return getBoolean(CFS_WRITE_BEHIND_ENABLE_KEY, CFS_WRITE_BEHIND_ENABLE_DEFAULT);
+  }
+
+  public int getWriteBufferSize() {
+    return getInt(CFS_WRITE_BUFFER_SIZE_KEY, CFS_WRITE_BUFFER_SIZE_DEFAULT);
+  }
+
+  public int getWriteMaxInFlight() {
+    return getInt(CFS_WRITE_MAX_INFLIGHT_KEY, CFS_WRITE_MAX_INFLIGHT_DEFAULT);
+  }
+
+  public boolean getBlockCacheEnable() {
+    return getBoolean(CFS_BLOCK_CACHE_ENABLE_KEY, CFS_BLOCK_CACHE_ENABLE_DEFAULT);
+  }
+
+  public String getBlockCacheDir() {
+    return configs.getOrDefault(CFS_BLOCK_CACHE_DIR_KEY, CFS_BLOCK_CACHE_DIR_DEFAULT);
+  }
+
+  public long getBlockCacheCapacity() {
+    return getLong(CFS_BLOCK_CACHE_CAPACITY_KEY, CFS_BLOCK_CACHE_CAPACITY_DEFAULT);
+  }
+
+  public int getBlockCacheBlockSize() {
+    return getInt(CFS_BLOCK_CACHE_BLOCK_SIZE_KEY, CFS_BLOCK_CACHE_BLOCK_SIZE_DEFAULT);
+  }
+
+  public int getBlockCacheLoadThreads() {
+    return getInt(CFS_BLOCK_CACHE_LOAD_THREADS_KEY, CFS_BLOCK_CACHE_LOAD_THREADS_DEFAULT);
+  }
+
+  public boolean getTailCacheEnable() {
+    return getBoolean(CFS_TAIL_CACHE_ENABLE_KEY, CFS_TAIL_CACHE_ENABLE_DEFAULT);
+  }
+
+  public int getTailCacheTailSize() {
+    return getInt(CFS_TAIL_CACHE_TAIL_SIZE_KEY, CFS_TAIL_CACHE_TAIL_SIZE_DEFAULT);
+  }
+
+  public long getTailCacheCapacity() {
+    return getLong(CFS_TAIL_CACHE_CAPACITY_KEY, CFS_TAIL_CACHE_CAPACITY_DEFAULT);
+  }
+
+  public int getCacheMinFileAge() {
+    return getInt(CFS_CACHE_MIN_FILE_AGE_KEY, CFS_CACHE_MIN_FILE_AGE_DEFAULT);
+  }
+
+  public boolean getStatCacheEnable() {
+    return getBoolean(CFS_STAT_CACHE_ENABLE_KEY, CFS_STAT_CACHE_ENABLE_DEFAULT);
+  }
+
+  public int getStatCacheSize() {
+    return getInt(CFS_STAT_CACHE_SIZE_KEY, CFS_STAT_CACHE_SIZE_DEFAULT);
+  }
+
+  public int getStatCacheTTL() {
+    return getInt(CFS_STAT_CACHE_TTL_KEY, CFS_STAT_CACHE_TTL_DEFAULT);
+  }
+
+  public boolean getStatCacheNegative() {
+    return getBoolean(CFS_STAT_CACHE_NEGATIVE_KEY, CFS_STAT_CACHE_NEGATIVE_DEFAULT);
+  }
+
+  public Set<String> getStatCacheBypassOps() {
+    return getStrings(CFS_STAT_CACHE_BYPASS_OPS_KEY);
+  }
+
+  public int getDirCacheSize() {
+    return getInt(CFS_DIR_CACHE_SIZE_KEY, CFS_DIR_CACHE_SIZE_DEFAULT);
+  }
+
+  public int getIdCacheTTL() {
+    return getInt(CFS_ID_CACHE_TTL_KEY, CFS_ID_CACHE_TTL_DEFAULT);
+  }
+
+  public boolean getParallelDeleteEnable() {
+    return getBoolean(CFS_DELETE_PARALLEL_ENABLE_KEY, CFS_DELETE_PARALLEL_ENABLE_DEFAULT);
+  }
+
+  public int getDeleteParallelism() {
+    return getInt(CFS_DELETE_PARALLELISM_KEY, CFS_DELETE_PARALLELISM_DEFAULT);
+  }
+
+  public int getParallelDeleteThreshold() {
+    return getInt(CFS_DELETE_PARALLEL_THRESHOLD_KEY, CFS_DELETE_PARALLEL_THRESHOLD_DEFAULT);
+  }
+
+  public int getDeleteProgressInterval() {
+    return getInt(CFS_DELETE_PROGRESS_INTERVAL_KEY, CFS_DELETE_PROGRESS_INTERVAL_DEFAULT);
+  }
+
+  public int getListBatchSize() {
+    return getInt(CFS_LIST_BATCH_SIZE_KEY, CFS_LIST_BATCH_SIZE_DEFAULT);
+  }
+
+  public boolean getListPrefetch() {
+    return getBoolean(CFS_LIST_PREFETCH_KEY, CFS_LIST_PREFETCH_DEFAULT);
+  }
+
+  public boolean getChecksumEnable() {
+    return getBoolean(CFS_CHECKSUM_ENABLE_KEY, CFS_CHECKSUM_ENABLE_DEFAULT);
+  }
+
+  public int getChecksumBytesPerCrc() {
+    return getInt(CFS_CHECKSUM_BYTES_PER_CRC_KEY, CFS_CHECKSUM_BYTES_PER_CRC_DEFAULT);
+  }
+
+  public int getChecksumCacheSize() {
+    return getInt(CFS_CHECKSUM_CACHE_SIZE_KEY, CFS_CHECKSUM_CACHE_SIZE_DEFAULT);
+  }
+
+  public int getVolumeStatRefresh() {
+    return getInt(CFS_VOLUME_STAT_REFRESH_KEY, CFS_VOLUME_STAT_REFRESH_DEFAULT);
+  }
+
+  public int getMasterHttpTimeout() {
+    return getInt(CFS_MASTER_HTTP_TIMEOUT_KEY, CFS_MASTER_HTTP_TIMEOUT_DEFAULT);
+  }
+
+  private boolean getBoolean(String key, boolean defaultValue) {
+    String res = configs.get(key);
+    if (res == null) {
+      return defaultValue;
+    }
+    return res.trim().equals("true");
+  }
+
+  private int getInt(String key, int defaultValue) {
+    String res = configs.get(key);
+    if (res == null || res.trim().isEmpty()) {
+      return defaultValue;
+    }
+    return Integer.parseInt(res.trim());
+  }
+
+  private long getLong(String key, long defaultValue) {
+    String res = configs.get(key);
+    if (res == null || res.trim().isEmpty()) {
+      return defaultValue;
+    }
+    return Long.parseLong(res.trim());
+  }
+
+  private Set<String> getStrings(String key) {
+    Set<String> res = new HashSet<>();
+    String value = configs.get(key);
+    if (value == null) {
+      return res;
+    }
+    for (String item : value.split(",")) {
+      if (!item.trim().isEmpty()) {
+        res.add(item.trim());
+      }
+    }
+    return res;
+  }
+
   public void load(String configFilie) throws Exception {
     try {
       parse(configFilie);
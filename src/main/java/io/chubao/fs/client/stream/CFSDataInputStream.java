@@ -13,44 +13,147 @@
 // permissions and limitations under the License.
 package io.chubao.fs.client.stream;
 
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.sdk.CFSFile;
+import io.chubao.fs.sdk.exception.CFSException;
 import io.chubao.fs.sdk.stream.CFSInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.*;
+import org.apache.hadoop.fs.impl.CombinedFileRange;
+import org.apache.hadoop.fs.statistics.IOStatisticsAggregator;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
 import org.apache.hadoop.io.ByteBufferPool;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+import static org.apache.hadoop.fs.VectoredReadUtils.mergeSortedRanges;
+import static org.apache.hadoop.fs.VectoredReadUtils.sliceTo;
+import static org.apache.hadoop.fs.VectoredReadUtils.validateNonOverlappingAndReturnSortedRanges;
+import static org.apache.hadoop.fs.VectoredReadUtils.validateRangeRequest;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_BYTES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_CLOSE_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EXCEPTIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_SEEK_BACKWARD_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_SEEK_FORWARD_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_SEEK_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_UNBUFFERED;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_VECTORED_COMBINED_RANGES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_VECTORED_INCOMING_RANGES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_VECTORED_OPERATIONS;
 
 public class CFSDataInputStream extends FSInputStream implements ByteBufferReadable,
-    HasEnhancedByteBufferAccess, CanUnbuffer {
+    ByteBufferPositionedReadable, HasEnhancedByteBufferAccess, CanUnbuffer, StreamCapabilities,
+    IOStatisticsSource {
   private static final Log log = LogFactory.getLog(CFSDataInputStream.class);
 
-  private CFSInputStream input;
+  private static final int COPY_BUFFER_SIZE = 128 * 1024;
+  /** Copies the reads into the direct buffers, one per thread so the reads allocate nothing. */
+  private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[COPY_BUFFER_SIZE]);
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocateDirect(0).asReadOnlyBuffer();
+
+  private final FileOpener opener;
+  private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+  private final Object reopenLock = new Object();
+  private volatile CFSFile file;
+  private volatile CFSInputStream input;
+  /** Set by unbuffer while the file is being read, the last reader closes the file. */
+  private volatile boolean closeWhenIdle;
+  private ReadAheadBuffer readAhead;
+  private final PositionReader reader;
+  private final boolean cached;
+  private final ExecutorService executor;
+  private final int vectoredMinSeek;
+  private final int vectoredMaxMergedSize;
+  private long pos = 0;
+  private final byte[] oneByte = new byte[1];
+  private final Map<ByteBuffer, ByteBufferPool> extendedReadBuffers = new IdentityHashMap<>();
+  private final FileSystem.Statistics statistics;
+  private final IOStatisticsStore iostats = StreamStatistics.newInputStreamStatistics();
+  private final IOStatisticsAggregator fsIOStats;
+  private volatile boolean closed;
 
-  public CFSDataInputStream(CFSInputStream stream) {
-    this.input = stream;
+  /**
+   * @param opener opens the file again on the first read after {@link #unbuffer()}.
+   * @param caches the caches in front of the native reads, the first one is read first.
+   * @param statistics the statistics of the file system, counting the bytes read, may be null.
+   * @param fsIOStats the IOStatistics of the file system, the statistics of the stream are
+   *                  aggregated into it on close, may be null.
+   */
+  public CFSDataInputStream(CFSFile file, FileOpener opener, List<ReadCache> caches,
+                            CFSConfig cfg, int bufferSize, ExecutorService executor,
+                            FileSystem.Statistics statistics, IOStatisticsAggregator fsIOStats) {
+    this.file = file;
+    this.input = new CFSInputStream(file);
+    this.opener = opener;
+    this.cached = !caches.isEmpty();
+    PositionReader reader = this::readNative;
+    for (int i = caches.size() - 1; i >= 0; i--) {
+      reader = caches.get(i).reader(reader, this::readBackground, iostats);
+    }
+    this.reader = reader;
+    this.executor = executor;
+    this.statistics = statistics;
+    this.fsIOStats = fsIOStats;
+    this.vectoredMinSeek = cfg.getVectoredReadMinSeek();
+    this.vectoredMaxMergedSize = cfg.getVectoredReadMaxMergedSize();
+    if (cfg.getReadAheadEnable()) {
+      int minWindow = Math.max(cfg.getReadAheadMinSize(), bufferSize);
+      this.readAhead = new ReadAheadBuffer(this::readAt, cfg.getReadAheadAsync() ? executor : null,
+          minWindow, cfg.getReadAheadMaxSize(), iostats);
+    }
   }
 
   @Override
-  public void seek(long pos) throws IOException {
-    input.seek(pos);
+  public synchronized void seek(long pos) throws IOException {
+    if (pos < 0) {
+      throw new EOFException(FSExceptionMessages.NEGATIVE_SEEK + ": " + pos);
+    }
+    if (pos != this.pos) {
+      iostats.incrementCounter(STREAM_READ_SEEK_OPERATIONS);
+      iostats.incrementCounter(pos < this.pos ? STREAM_READ_SEEK_BACKWARD_OPERATIONS
+          : STREAM_READ_SEEK_FORWARD_OPERATIONS);
+    }
+    this.pos = pos;
   }
 
   @Override
-  public long getPos() throws IOException {
-    return input.getPos();
+  public synchronized long getPos() throws IOException {
+    return pos;
   }
 
   @Override
   public boolean seekToNewSource(long targetPos) throws IOException {
-    return input.seekToNewSource(targetPos);
+    lockInput();
+    try {
+      return openInput().seekToNewSource(targetPos);
+    } finally {
+      unlockInput();
+    }
   }
 
   @Override
-  public int read() throws IOException {
-    return input.read();
+  public synchronized int read() throws IOException {
+    int size = read(oneByte, 0, 1);
+    if (size <= 0) {
+      return -1;
+    }
+    return oneByte[0] & 0xff;
   }
 
   @Override
@@ -63,32 +166,428 @@ public class CFSDataInputStream extends FSInputStream implements ByteBufferReada
       return 0;
     }
 
-    int size = input.read(buf, off, len);
+    int size = readAhead != null ? readAhead.read(pos, buf, off, len) : readAt(pos, buf, off, len);
+    if (size > 0) {
+      pos += size;
+    }
+    bytesRead(size);
+    return size;
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer byteBuffer) throws IOException {
+    if (byteBuffer.hasArray()) {
+      int size = read(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
+      if (size > 0) {
+        byteBuffer.position(byteBuffer.position() + size);
+      }
+      return size;
+    }
+    if (cached) {
+      byte[] buf = COPY_BUFFER.get();
+      int size = read(buf, 0, Math.min(byteBuffer.remaining(), buf.length));
+      if (size > 0) {
+        byteBuffer.put(buf, 0, size);
+      }
+      return size;
+    }
+
+    int size;
+    lockInput();
+    try {
+      CFSInputStream in = openInput();
+      in.seek(pos);
+      size = in.read(byteBuffer);
+    } finally {
+      unlockInput();
+    }
+    if (size > 0) {
+      pos += size;
+    }
+    bytesRead(size);
     return size;
   }
 
+  /**
+   * Positional reads never touch the stream position or the read-ahead window,
+   * so they are not synchronized and run in parallel on the same file.
+   */
+  @Override
+  public int read(long position, byte[] buf, int off, int len) throws IOException {
+    validatePositionedReadArgs(position, buf, off, len);
+    if (len == 0) {
+      return 0;
+    }
+    int size = readAt(position, buf, off, len);
+    bytesRead(size);
+    return size;
+  }
+
+  @Override
+  public void readFully(long position, byte[] buf, int off, int len) throws IOException {
+    validatePositionedReadArgs(position, buf, off, len);
+    int nread = 0;
+    while (nread < len) {
+      int size = readAt(position + nread, buf, off + nread, len - nread);
+      if (size < 0) {
+        throw new EOFException(FSExceptionMessages.EOF_IN_READ_FULLY);
+      }
+      bytesRead(size);
+      nread += size;
+    }
+  }
+
+  @Override
+  public int read(long position, ByteBuffer byteBuffer) throws IOException {
+    if (!byteBuffer.hasRemaining()) {
+      return 0;
+    }
+    if (byteBuffer.hasArray()) {
+      int size = read(position, byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+          byteBuffer.remaining());
+      if (size > 0) {
+        byteBuffer.position(byteBuffer.position() + size);
+      }
+      return size;
+    }
+
+    // Copy until the buffer is full or a read comes back short, as one native read would.
+    byte[] buf = COPY_BUFFER.get();
+    int total = 0;
+    while (byteBuffer.hasRemaining()) {
+      int len = Math.min(byteBuffer.remaining(), buf.length);
+      int size = read(position + total, buf, 0, len);
+      if (size < 0) {
+        return total > 0 ? total : -1;
+      }
+      byteBuffer.put(buf, 0, size);
+      total += size;
+      if (size < len) {
+        break;
+      }
+    }
+    return total;
+  }
+
+  @Override
+  public void readFully(long position, ByteBuffer byteBuffer) throws IOException {
+    while (byteBuffer.hasRemaining()) {
+      int size = read(position, byteBuffer);
+      if (size < 0) {
+        throw new EOFException(FSExceptionMessages.EOF_IN_READ_FULLY);
+      }
+      position += size;
+    }
+  }
+
   @Override
-  public int read(ByteBuffer byteBuffer) throws IOException {
-    return input.read(byteBuffer);
+  public int minSeekForVectorReads() {
+    return vectoredMinSeek;
   }
 
   @Override
-  public ByteBuffer read(ByteBufferPool byteBufferPool, int i, EnumSet<ReadOption> enumSet) throws IOException, UnsupportedOperationException {
-    throw new IOException("Not implement the read function.");
+  public int maxReadSizeForVectorReads() {
+    return vectoredMaxMergedSize;
   }
 
+  /**
+   * Sorts the ranges, merges the ranges closer than {@link #minSeekForVectorReads()}
+   * up to {@link #maxReadSizeForVectorReads()}, then reads the merged ranges in parallel
+   * with positional reads. Every range is completed with a slice of its merged buffer.
+   */
   @Override
-  public void unbuffer() {
-    log.error("Not implement unbuffer function.");
+  public void readVectored(List<? extends FileRange> ranges, IntFunction<ByteBuffer> allocate) throws IOException {
+    List<? extends FileRange> sortedRanges = validateNonOverlappingAndReturnSortedRanges(ranges);
+    for (FileRange range : ranges) {
+      validateRangeRequest(range);
+      range.setData(new CompletableFuture<>());
+    }
+
+    List<CombinedFileRange> combinedRanges = mergeSortedRanges(sortedRanges, 1,
+        minSeekForVectorReads(), maxReadSizeForVectorReads());
+    iostats.incrementCounter(STREAM_READ_VECTORED_OPERATIONS);
+    iostats.incrementCounter(STREAM_READ_VECTORED_INCOMING_RANGES, ranges.size());
+    iostats.incrementCounter(STREAM_READ_VECTORED_COMBINED_RANGES, combinedRanges.size());
+    if (log.isDebugEnabled()) {
+      log.debug("readVectored: " + ranges.size() + " ranges merged to " + combinedRanges.size());
+    }
+    for (CombinedFileRange combined : combinedRanges) {
+      if (executor == null) {
+        readCombinedRange(combined, allocate);
+        continue;
+      }
+      try {
+        executor.submit(() -> readCombinedRange(combined, allocate));
+      } catch (RejectedExecutionException e) {
+        readCombinedRange(combined, allocate);
+      }
+    }
+  }
+
+  private void readCombinedRange(CombinedFileRange combined, IntFunction<ByteBuffer> allocate) {
+    try {
+      ByteBuffer buffer = allocate.apply(combined.getLength());
+      readFully(combined.getOffset(), buffer);
+      buffer.flip();
+      List<FileRange> children = combined.getUnderlying();
+      if (children.size() == 1) {
+        children.get(0).getData().complete(buffer);
+        return;
+      }
+      for (FileRange child : children) {
+        child.getData().complete(sliceTo(buffer, combined.getOffset(), child));
+      }
+    } catch (Throwable t) {
+      for (FileRange child : combined.getUnderlying()) {
+        child.getData().completeExceptionally(t);
+      }
+    }
   }
 
   @Override
-  public void releaseBuffer(ByteBuffer byteBuffer) {
-    log.error("Not implement releaseBuff function.");
+  public boolean hasCapability(String capability) {
+    switch (capability.toLowerCase(Locale.ENGLISH)) {
+      case StreamCapabilities.READBYTEBUFFER:
+      case StreamCapabilities.PREADBYTEBUFFER:
+      case StreamCapabilities.VECTOREDIO:
+      case StreamCapabilities.IOSTATISTICS:
+      case StreamCapabilities.UNBUFFER:
+        return true;
+      default:
+        return false;
+    }
   }
 
+  /**
+   * The buffer is taken from the pool, preferring a direct one, and filled by {@link #read(ByteBuffer)}.
+   * Without a tail or block cache, the native stream reads into the buffer directly, past the read-ahead
+   * window. With a cache, the read goes through the caches and the read-ahead window, and is copied into
+   * the buffer from a per-thread heap buffer. There is no client side checksum, so the read is the same
+   * with or without {@link ReadOption#SKIP_CHECKSUMS}. The buffer must be given back with
+   * {@link #releaseBuffer(ByteBuffer)}.
+   */
   @Override
-  public void close() throws IOException {
-    input.close();
+  public synchronized ByteBuffer read(ByteBufferPool byteBufferPool, int maxLength, EnumSet<ReadOption> opts)
+      throws IOException, UnsupportedOperationException {
+    if (byteBufferPool == null) {
+      throw new UnsupportedOperationException("Zero-copy reads need a ByteBufferPool.");
+    }
+    if (maxLength <= 0) {
+      return EMPTY_BUFFER;
+    }
+
+    ByteBuffer buffer = byteBufferPool.getBuffer(true, maxLength);
+    if (buffer == null) {
+      throw new UnsupportedOperationException("The ByteBufferPool returned a null buffer.");
+    }
+    int size = -1;
+    try {
+      buffer.clear();
+      if (buffer.remaining() > maxLength) {
+        buffer.limit(maxLength);
+      }
+      size = read(buffer);
+    } finally {
+      if (size <= 0) {
+        byteBufferPool.putBuffer(buffer);
+      }
+    }
+    if (size < 0) {
+      return null;
+    }
+    if (size == 0) {
+      return EMPTY_BUFFER;
+    }
+    buffer.flip();
+    extendedReadBuffers.put(buffer, byteBufferPool);
+    return buffer;
+  }
+
+  /**
+   * Drops the read-ahead window and closes the native file, which frees its caches and connections
+   * in the SDK. The position is kept, the next read opens the file again.
+   * If a positional read is still using the native file, the last reader closes it.
+   */
+  @Override
+  public synchronized void unbuffer() {
+    if (closed) {
+      return;
+    }
+    iostats.incrementCounter(STREAM_READ_UNBUFFERED);
+    if (readAhead != null) {
+      readAhead.release();
+    }
+    closeWhenIdle = true;
+    closeIfIdle();
+  }
+
+  @Override
+  public synchronized void releaseBuffer(ByteBuffer byteBuffer) {
+    if (byteBuffer == EMPTY_BUFFER) {
+      return;
+    }
+    ByteBufferPool byteBufferPool = extendedReadBuffers.remove(byteBuffer);
+    if (byteBufferPool == null) {
+      throw new IllegalArgumentException("Tried to release a buffer that was not created by this stream, "
+          + byteBuffer);
+    }
+    byteBufferPool.putBuffer(byteBuffer);
+  }
+
+  @Override
+  public IOStatisticsStore getIOStatistics() {
+    return iostats;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    iostats.incrementCounter(STREAM_READ_CLOSE_OPERATIONS);
+    if (fsIOStats != null) {
+      fsIOStats.aggregate(iostats);
+    }
+    if (readAhead != null) {
+      readAhead.release();
+    }
+    if (!extendedReadBuffers.isEmpty()) {
+      log.warn("Close the stream with " + extendedReadBuffers.size() + " unreleased buffers.");
+      for (Map.Entry<ByteBuffer, ByteBufferPool> entry : extendedReadBuffers.entrySet()) {
+        entry.getValue().putBuffer(entry.getKey());
+      }
+      extendedReadBuffers.clear();
+    }
+    fileLock.writeLock().lock();
+    try {
+      closeWhenIdle = false;
+      closeInput();
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  private int readAt(long position, byte[] buf, int off, int len) throws IOException {
+    return reader.read(position, buf, off, len);
+  }
+
+  private int readNative(long position, byte[] buf, int off, int len) throws IOException {
+    lockInput();
+    try {
+      openInput();
+      long size = file.read(position, buf, off, len);
+      return size <= 0 ? -1 : (int) size;
+    } catch (CFSException ex) {
+      iostats.incrementCounter(STREAM_READ_EXCEPTIONS);
+      throw new IOException(ex);
+    } finally {
+      unlockInput();
+    }
+  }
+
+  /**
+   * Reads for the background work of the caches. Unlike {@link #readNative}, it neither opens the file
+   * again nor cancels the close of a pending unbuffer, it reads nothing once the file is released.
+   */
+  private int readBackground(long position, byte[] buf, int off, int len) throws IOException {
+    fileLock.readLock().lock();
+    try {
+      CFSFile f = file;
+      if (f == null || closeWhenIdle) {
+        return -1;
+      }
+      long size = f.read(position, buf, off, len);
+      return size <= 0 ? -1 : (int) size;
+    } catch (CFSException ex) {
+      iostats.incrementCounter(STREAM_READ_EXCEPTIONS);
+      throw new IOException(ex);
+    } finally {
+      unlockInput();
+    }
+  }
+
+  /**
+   * Takes the read lock for a use of the file. A read started after {@link #unbuffer()} wants
+   * the file open, so it cancels the close of the pending unbuffer.
+   */
+  private void lockInput() {
+    fileLock.readLock().lock();
+    closeWhenIdle = false;
+  }
+
+  private void unlockInput() {
+    fileLock.readLock().unlock();
+    if (closeWhenIdle) {
+      closeIfIdle();
+    }
+  }
+
+  /**
+   * Closes the file of a pending unbuffer unless it is being read, the last reader closes it then.
+   */
+  private void closeIfIdle() {
+    if (!fileLock.writeLock().tryLock()) {
+      return;
+    }
+    try {
+      if (closeWhenIdle) {
+        closeWhenIdle = false;
+        closeInput();
+      }
+    } catch (IOException e) {
+      log.warn("Failed to close the file on unbuffer.", e);
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Opens the file again if it was released by {@link #unbuffer()}. The caller holds the read lock,
+   * so the file is not released before the caller is done with it. The read-ahead calls it from
+   * the executor, so it does not lock the stream itself.
+   */
+  private CFSInputStream openInput() throws IOException {
+    CFSInputStream in = input;
+    if (in != null) {
+      return in;
+    }
+    synchronized (reopenLock) {
+      if (closed) {
+        throw new IOException(FSExceptionMessages.STREAM_IS_CLOSED);
+      }
+      if (input == null) {
+        try {
+          file = opener.open();
+        } catch (CFSException ex) {
+          iostats.incrementCounter(STREAM_READ_EXCEPTIONS);
+          throw new IOException(ex);
+        }
+        input = new CFSInputStream(file);
+      }
+      return input;
+    }
+  }
+
+  /**
+   * The caller holds the write lock.
+   */
+  private void closeInput() throws IOException {
+    CFSInputStream in = input;
+    input = null;
+    file = null;
+    if (in != null) {
+      in.close();
+    }
+  }
+
+  private void bytesRead(int size) {
+    iostats.incrementCounter(STREAM_READ_OPERATIONS);
+    if (size > 0) {
+      iostats.incrementCounter(STREAM_READ_BYTES, size);
+      if (statistics != null) {
+        statistics.incrementBytesRead(size);
+      }
+    }
   }
 }
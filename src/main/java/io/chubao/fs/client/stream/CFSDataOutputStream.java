@@ -0,0 +1,369 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.sdk.stream.CFSOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSExceptionMessages;
+import org.apache.hadoop.fs.StreamCapabilities;
+import org.apache.hadoop.fs.Syncable;
+import org.apache.hadoop.fs.statistics.IOStatisticsAggregator;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_WRITE_SYNC_COALESCED;
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_WRITE_SYNC_FLUSHES;
+import static io.chubao.fs.client.stream.StreamStatistics.syncLatencyKey;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.OP_HFLUSH;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.OP_HSYNC;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_WRITE_BLOCK_UPLOADS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_WRITE_BYTES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_WRITE_EXCEPTIONS;
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.trackDurationOfInvocation;
+
+/**
+ * Coalesces the small writes into buffers of cfs.write.buffer.size, and writes the full buffers
+ * to the native stream in the background, in order, with at most cfs.write.max.inflight buffers pending.
+ * A failed background write is thrown by the next write, flush or close.
+ * flush() only hands the buffered data to the background writer, hflush() and hsync() wait until
+ * every byte written before is flushed by the native stream.
+ * <p>
+ * The syncs are group committed: one caller flushes everything written so far while the writers
+ * go on, and the callers queued behind it return without a flush of their own if that flush
+ * already covered their data. The native flush runs after the pending background writes,
+ * in the same order.
+ */
+public class CFSDataOutputStream extends OutputStream implements Syncable, StreamCapabilities,
+    IOStatisticsSource {
+  private static final Log log = LogFactory.getLog(CFSDataOutputStream.class);
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final CFSOutputStream output;
+  private final ExecutorService executor;
+  private final int bufferSize;
+  private final Semaphore inFlight;
+  private final ConcurrentLinkedQueue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+  private final IOStatisticsStore iostats = StreamStatistics.newOutputStreamStatistics();
+  private final IOStatisticsAggregator fsIOStats;
+
+  private final Object syncLock = new Object();
+
+  private byte[] buf;
+  private int count;
+  private long written;
+  private volatile long synced;
+  private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+  private volatile IOException error;
+  private boolean closed;
+
+  /**
+   * @param fsIOStats the IOStatistics of the file system, the statistics of the stream are
+   *                  aggregated into it on close, may be null.
+   */
+  public CFSDataOutputStream(CFSOutputStream output, CFSConfig cfg, ExecutorService executor,
+                             IOStatisticsAggregator fsIOStats) {
+    this.output = output;
+    this.fsIOStats = fsIOStats;
+    this.bufferSize = cfg.getWriteBufferSize();
+    int maxInFlight = cfg.getWriteMaxInFlight();
+    this.executor = cfg.getWriteBehindEnable() && maxInFlight > 0 ? executor : null;
+    this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+  }
+
+  @Override
+  public synchronized void write(int b) throws IOException {
+    checkOpen();
+    if (buf == null || count == buf.length) {
+      ensureCapacity();
+    }
+    buf[count++] = (byte) b;
+    written++;
+    iostats.incrementCounter(STREAM_WRITE_BYTES);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    if (b == null) {
+      throw new NullPointerException();
+    } else if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    checkOpen();
+    written += len;
+    iostats.incrementCounter(STREAM_WRITE_BYTES, len);
+    while (len > 0) {
+      if (buf == null || count == buf.length) {
+        ensureCapacity();
+      }
+      int size = Math.min(len, buf.length - count);
+      System.arraycopy(b, off, buf, count, size);
+      count += size;
+      off += size;
+      len -= size;
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    checkOpen();
+    handoff();
+  }
+
+  @Override
+  public void hflush() throws IOException {
+    trackDurationOfInvocation(iostats, OP_HFLUSH, this::sync);
+  }
+
+  @Override
+  public void hsync() throws IOException {
+    trackDurationOfInvocation(iostats, OP_HSYNC, this::sync);
+  }
+
+  @Override
+  public boolean hasCapability(String capability) {
+    switch (capability.toLowerCase(Locale.ENGLISH)) {
+      case StreamCapabilities.HFLUSH:
+      case StreamCapabilities.HSYNC:
+      case StreamCapabilities.IOSTATISTICS:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public IOStatisticsStore getIOStatistics() {
+    return iostats;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      handoff();
+      drain();
+    } finally {
+      output.close();
+      buf = null;
+      freeBuffers.clear();
+      if (fsIOStats != null) {
+        fsIOStats.aggregate(iostats);
+      }
+    }
+  }
+
+  private void sync() throws IOException {
+    long start = System.nanoTime();
+    long target;
+    synchronized (this) {
+      checkOpen();
+      target = written;
+    }
+    synchronized (syncLock) {
+      if (synced >= target) {
+        iostats.incrementCounter(STREAM_WRITE_SYNC_COALESCED);
+      } else {
+        groupFlush();
+      }
+    }
+    iostats.incrementCounter(syncLatencyKey((System.nanoTime() - start) / 1000));
+  }
+
+  /**
+   * Flushes everything written so far. The caller holds the sync lock, the stream is only locked
+   * to queue the flush, so the writes go on while it waits.
+   */
+  private void groupFlush() throws IOException {
+    long upTo;
+    CompletableFuture<Void> flushed = null;
+    synchronized (this) {
+      checkOpen();
+      handoff();
+      upTo = written;
+      if (executor == null) {
+        output.flush();
+      } else {
+        flushed = tail = chain(this::flushBuffered);
+      }
+    }
+    if (flushed != null) {
+      await(flushed);
+    }
+    iostats.incrementCounter(STREAM_WRITE_SYNC_FLUSHES);
+    synced = upTo;
+  }
+
+  private void ensureCapacity() throws IOException {
+    if (buf == null) {
+      byte[] free = freeBuffers.poll();
+      buf = free != null ? free : new byte[Math.min(INITIAL_BUFFER_SIZE, bufferSize)];
+      count = 0;
+    } else if (buf.length < bufferSize) {
+      buf = Arrays.copyOf(buf, Math.min(buf.length << 1, bufferSize));
+    } else {
+      handoff();
+      ensureCapacity();
+    }
+  }
+
+  private void handoff() throws IOException {
+    checkError();
+    if (buf == null || count == 0) {
+      return;
+    }
+    final byte[] data = buf;
+    final int len = count;
+    buf = null;
+    count = 0;
+
+    iostats.incrementCounter(STREAM_WRITE_BLOCK_UPLOADS);
+    if (executor == null) {
+      writeDirect(data, len);
+      return;
+    }
+
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the background writes.");
+    }
+    tail = chain(() -> writeBuffer(data, len));
+  }
+
+  /**
+   * Runs the task on the executor after the pending stages. The stages never complete exceptionally:
+   * a task the executor rejects, e.g. after the io pool of the file system is shut down, runs in the
+   * thread completing the previous stage, so every buffer is still written in order and its permit released.
+   */
+  private CompletableFuture<Void> chain(Runnable task) {
+    CompletableFuture<Void> stage = new CompletableFuture<>();
+    Runnable run = () -> {
+      try {
+        task.run();
+      } finally {
+        stage.complete(null);
+      }
+    };
+    tail.whenComplete((v, t) -> {
+      try {
+        executor.execute(run);
+      } catch (RejectedExecutionException e) {
+        run.run();
+      }
+    });
+    return stage;
+  }
+
+  private void writeDirect(byte[] data, int len) throws IOException {
+    try {
+      output.write(data, 0, len);
+    } catch (IOException e) {
+      iostats.incrementCounter(STREAM_WRITE_EXCEPTIONS);
+      throw e;
+    }
+    recycle(data);
+  }
+
+  private void writeBuffer(byte[] data, int len) {
+    try {
+      if (error == null) {
+        output.write(data, 0, len);
+      }
+    } catch (IOException e) {
+      log.error("Failed to write " + len + " bytes in the background.", e);
+      iostats.incrementCounter(STREAM_WRITE_EXCEPTIONS);
+      error = e;
+    } catch (RuntimeException e) {
+      log.error("Failed to write " + len + " bytes in the background.", e);
+      iostats.incrementCounter(STREAM_WRITE_EXCEPTIONS);
+      error = new IOException(e);
+    } finally {
+      recycle(data);
+      inFlight.release();
+    }
+  }
+
+  private void flushBuffered() {
+    try {
+      if (error == null) {
+        output.flush();
+      }
+    } catch (IOException e) {
+      log.error("Failed to flush in the background.", e);
+      iostats.incrementCounter(STREAM_WRITE_EXCEPTIONS);
+      error = e;
+    } catch (RuntimeException e) {
+      log.error("Failed to flush in the background.", e);
+      iostats.incrementCounter(STREAM_WRITE_EXCEPTIONS);
+      error = new IOException(e);
+    }
+  }
+
+  private void recycle(byte[] data) {
+    if (data.length == bufferSize && !closed) {
+      freeBuffers.offer(data);
+    }
+  }
+
+  private void drain() throws IOException {
+    await(tail);
+  }
+
+  private void await(CompletableFuture<Void> future) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the background writes.");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    checkError();
+  }
+
+  private void checkOpen() throws IOException {
+    if (closed) {
+      throw new IOException(FSExceptionMessages.STREAM_IS_CLOSED);
+    }
+    checkError();
+  }
+
+  private void checkError() throws IOException {
+    IOException e = error;
+    if (e != null) {
+      throw new IOException("A background write of the stream failed.", e);
+    }
+    if (tail.isCompletedExceptionally()) {
+      throw new IOException("A background write of the stream did not run.");
+    }
+  }
+}
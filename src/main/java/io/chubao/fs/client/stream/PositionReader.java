@@ -0,0 +1,26 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import java.io.IOException;
+
+/**
+ * Reads the file at the given offset without changing any stream position.
+ */
+public interface PositionReader {
+  /**
+   * @return the number of bytes read, or -1 if the position is at or beyond the end of file.
+   */
+  int read(long position, byte[] buf, int off, int len) throws IOException;
+}
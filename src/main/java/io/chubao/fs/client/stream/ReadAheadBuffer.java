@@ -0,0 +1,259 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_READ_READAHEAD_HITS;
+import static io.chubao.fs.client.stream.StreamStatistics.STREAM_READ_READAHEAD_MISSES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_PREFETCH_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.emptyStatisticsStore;
+
+/**
+ * Adaptive read-ahead for one input stream.
+ * The window starts at the min size, doubles on every sequential refill up to the max size,
+ * and collapses back to the min size once a read is not sequential.
+ * While the caller consumes a window of a sequential stream, the next window is fetched by the executor.
+ * It is not thread safe, the owner stream serializes the calls.
+ */
+class ReadAheadBuffer {
+  private static final Log log = LogFactory.getLog(ReadAheadBuffer.class);
+
+  private final PositionReader reader;
+  private final ExecutorService executor;
+  private final int minWindow;
+  private final int maxWindow;
+  private final IOStatisticsStore stats;
+
+  private int window;
+  private long expectedPos = -1;
+
+  private byte[] buf;
+  private long bufStart;
+  private int bufLen;
+  private boolean bufEOF;
+  private byte[] spare;
+
+  private Future<Chunk> prefetch;
+  private long prefetchStart;
+  private int prefetchLen;
+  /** Claimed by the prefetch when it starts, or by the owner to keep it from starting. */
+  private AtomicBoolean prefetchClaimed;
+  private CountDownLatch prefetchDone;
+
+  private static class Chunk {
+    private final byte[] data;
+    private final int len;
+
+    Chunk(byte[] data, int len) {
+      this.data = data;
+      this.len = len;
+    }
+  }
+
+  ReadAheadBuffer(PositionReader reader, ExecutorService executor, int minWindow, int maxWindow) {
+    this(reader, executor, minWindow, maxWindow, emptyStatisticsStore());
+  }
+
+  ReadAheadBuffer(PositionReader reader, ExecutorService executor, int minWindow, int maxWindow,
+                  IOStatisticsStore stats) {
+    this.reader = reader;
+    this.executor = executor;
+    this.minWindow = minWindow;
+    this.maxWindow = Math.max(minWindow, maxWindow);
+    this.window = minWindow;
+    this.stats = stats;
+  }
+
+  int read(long pos, byte[] b, int off, int len) throws IOException {
+    boolean sequential = expectedPos >= 0 && pos >= expectedPos && pos - expectedPos <= window;
+    if (!sequential) {
+      cancelPrefetch();
+      window = minWindow;
+    }
+
+    int total = 0;
+    while (total < len) {
+      int size = readOnce(pos + total, b, off + total, len - total, sequential || total > 0);
+      if (size <= 0) {
+        break;
+      }
+      total += size;
+    }
+
+    if (total == 0) {
+      return -1;
+    }
+    expectedPos = pos + total;
+    return total;
+  }
+
+  /**
+   * Drops the buffers. A prefetch that has not started is cancelled, a running one is waited for,
+   * so the reader is not used after it returns.
+   */
+  void release() {
+    if (prefetch != null && !prefetchClaimed.compareAndSet(false, true)) {
+      try {
+        prefetchDone.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    cancelPrefetch();
+    buf = null;
+    spare = null;
+    bufLen = 0;
+    expectedPos = -1;
+    window = minWindow;
+  }
+
+  private int readOnce(long pos, byte[] b, int off, int len, boolean sequential) throws IOException {
+    int size = copy(pos, b, off, len);
+    if (size > 0) {
+      stats.incrementCounter(STREAM_READ_READAHEAD_HITS);
+      schedulePrefetch(sequential);
+      return size;
+    }
+
+    if (takePrefetch(pos)) {
+      if (sequential) {
+        window = Math.min(window << 1, maxWindow);
+      }
+      size = copy(pos, b, off, len);
+      if (size > 0) {
+        stats.incrementCounter(STREAM_READ_READAHEAD_HITS);
+        schedulePrefetch(sequential);
+        return size;
+      }
+    }
+
+    stats.incrementCounter(STREAM_READ_READAHEAD_MISSES);
+    cancelPrefetch();
+    if (sequential) {
+      window = Math.min(Math.max(window << 1, len), maxWindow);
+    }
+    if (len >= window) {
+      return reader.read(pos, b, off, len);
+    }
+
+    byte[] data = (buf != null && buf.length >= window) ? buf : new byte[window];
+    bufLen = fill(data, pos, window);
+    buf = data;
+    bufStart = pos;
+    bufEOF = bufLen < window;
+    size = copy(pos, b, off, len);
+    if (size > 0) {
+      schedulePrefetch(sequential);
+    }
+    return size;
+  }
+
+  private int copy(long pos, byte[] b, int off, int len) {
+    if (buf == null || pos < bufStart || pos >= bufStart + bufLen) {
+      return 0;
+    }
+    int start = (int) (pos - bufStart);
+    int size = Math.min(len, bufLen - start);
+    System.arraycopy(buf, start, b, off, size);
+    return size;
+  }
+
+  private int fill(byte[] data, long pos, int len) throws IOException {
+    int filled = 0;
+    while (filled < len) {
+      int size = reader.read(pos + filled, data, filled, len - filled);
+      if (size <= 0) {
+        break;
+      }
+      filled += size;
+    }
+    return filled;
+  }
+
+  private void schedulePrefetch(boolean sequential) {
+    if (!sequential || executor == null || prefetch != null || bufEOF) {
+      return;
+    }
+    final long start = bufStart + bufLen;
+    final int len = window;
+    final byte[] data = (spare != null && spare.length >= len) ? spare : new byte[len];
+    spare = null;
+    final AtomicBoolean claimed = new AtomicBoolean(false);
+    final CountDownLatch done = new CountDownLatch(1);
+    try {
+      prefetch = executor.submit(() -> {
+        if (!claimed.compareAndSet(false, true)) {
+          return new Chunk(data, 0);
+        }
+        try {
+          return new Chunk(data, fill(data, start, len));
+        } finally {
+          done.countDown();
+        }
+      });
+      prefetchClaimed = claimed;
+      prefetchDone = done;
+      prefetchStart = start;
+      prefetchLen = len;
+      stats.incrementCounter(STREAM_READ_PREFETCH_OPERATIONS);
+    } catch (RejectedExecutionException e) {
+      log.debug("Skip the read-ahead, the executor is shutdown.");
+    }
+  }
+
+  private boolean takePrefetch(long pos) throws IOException {
+    if (prefetch == null || pos < prefetchStart || pos >= prefetchStart + prefetchLen) {
+      return false;
+    }
+    Future<Chunk> future = prefetch;
+    prefetch = null;
+    Chunk chunk;
+    try {
+      chunk = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the read-ahead.");
+    } catch (ExecutionException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Read-ahead at " + prefetchStart + " failed, read it again.", e.getCause());
+      }
+      return false;
+    }
+    spare = buf;
+    buf = chunk.data;
+    bufStart = prefetchStart;
+    bufLen = chunk.len;
+    bufEOF = chunk.len < prefetchLen;
+    return true;
+  }
+
+  private void cancelPrefetch() {
+    if (prefetch != null) {
+      prefetch.cancel(false);
+      prefetch = null;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+
+/**
+ * A cache of one version of a file, put in front of the native reads of a stream.
+ */
+public interface ReadCache {
+  /**
+   * @param source reads the file on a miss.
+   * @param stats counts the hits and misses, may be null.
+   */
+  PositionReader reader(PositionReader source, IOStatisticsStore stats);
+
+  /**
+   * @param loader reads the file for the work the cache does in the background. It reads nothing
+   *               once the stream is unbuffered or closed, so it never opens the file again.
+   */
+  default PositionReader reader(PositionReader source, PositionReader loader, IOStatisticsStore stats) {
+    return reader(source, stats);
+  }
+}
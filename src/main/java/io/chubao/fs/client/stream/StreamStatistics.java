@@ -0,0 +1,147 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+
+import java.util.Arrays;
+
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.OP_HFLUSH;
+import static org.apache.hadoop.fs.statistics.StoreStatisticNames.OP_HSYNC;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_BYTES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_CLOSE_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_EXCEPTIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_PREFETCH_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_SEEK_BACKWARD_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_SEEK_FORWARD_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_SEEK_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_UNBUFFERED;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_VECTORED_COMBINED_RANGES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_VECTORED_INCOMING_RANGES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_READ_VECTORED_OPERATIONS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_WRITE_BLOCK_UPLOADS;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_WRITE_BYTES;
+import static org.apache.hadoop.fs.statistics.StreamStatisticNames.STREAM_WRITE_EXCEPTIONS;
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.iostatisticsStore;
+
+/**
+ * The IOStatistics keys of the streams. Every stream has its own store, which is aggregated
+ * into the store of its file system when the stream is closed, so the file system registers
+ * the same keys.
+ */
+public final class StreamStatistics {
+  /** Reads, or parts of a read crossing windows, served from the read-ahead window or a prefetch. */
+  public static final String STREAM_READ_READAHEAD_HITS = "stream_read_readahead_hits";
+  /** Reads, or parts of a read crossing windows, which had to wait for a native read. */
+  public static final String STREAM_READ_READAHEAD_MISSES = "stream_read_readahead_misses";
+  /** Reads served from the local block cache. */
+  public static final String STREAM_READ_BLOCK_CACHE_HITS = "stream_read_block_cache_hits";
+  /** Reads which loaded a block into the local block cache. */
+  public static final String STREAM_READ_BLOCK_CACHE_MISSES = "stream_read_block_cache_misses";
+  /** Reads served from the cached tail of the file. */
+  public static final String STREAM_READ_TAIL_CACHE_HITS = "stream_read_tail_cache_hits";
+  /** Reads which loaded the tail of the file into the tail cache. */
+  public static final String STREAM_READ_TAIL_CACHE_MISSES = "stream_read_tail_cache_misses";
+  /** Native flushes done by hflush() and hsync(). */
+  public static final String STREAM_WRITE_SYNC_FLUSHES = "stream_write_sync_flushes";
+  /** hflush() and hsync() calls whose data was made durable by the flush of another call. */
+  public static final String STREAM_WRITE_SYNC_COALESCED = "stream_write_sync_coalesced";
+
+  /**
+   * The upper bounds in microseconds of the sync latency buckets. A sync is counted in the first
+   * bucket it fits, the slower ones in the last, unbounded bucket.
+   */
+  static final long[] SYNC_LATENCY_BOUNDS_US = {
+      100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 1000000
+  };
+  /**
+   * The sync latency histogram, one counter per bucket,
+   * e.g. stream_write_sync_latency_le_1000us and stream_write_sync_latency_gt_1000000us.
+   */
+  public static final String[] STREAM_WRITE_SYNC_LATENCY = syncLatencyKeys();
+
+  public static final String[] INPUT_COUNTERS = {
+      STREAM_READ_BYTES,
+      STREAM_READ_OPERATIONS,
+      STREAM_READ_EXCEPTIONS,
+      STREAM_READ_SEEK_OPERATIONS,
+      STREAM_READ_SEEK_BACKWARD_OPERATIONS,
+      STREAM_READ_SEEK_FORWARD_OPERATIONS,
+      STREAM_READ_READAHEAD_HITS,
+      STREAM_READ_READAHEAD_MISSES,
+      STREAM_READ_PREFETCH_OPERATIONS,
+      STREAM_READ_BLOCK_CACHE_HITS,
+      STREAM_READ_BLOCK_CACHE_MISSES,
+      STREAM_READ_TAIL_CACHE_HITS,
+      STREAM_READ_TAIL_CACHE_MISSES,
+      STREAM_READ_VECTORED_OPERATIONS,
+      STREAM_READ_VECTORED_INCOMING_RANGES,
+      STREAM_READ_VECTORED_COMBINED_RANGES,
+      STREAM_READ_UNBUFFERED,
+      STREAM_READ_CLOSE_OPERATIONS
+  };
+
+  public static final String[] OUTPUT_COUNTERS = concat(new String[] {
+      STREAM_WRITE_BYTES,
+      STREAM_WRITE_BLOCK_UPLOADS,
+      STREAM_WRITE_EXCEPTIONS,
+      STREAM_WRITE_SYNC_FLUSHES,
+      STREAM_WRITE_SYNC_COALESCED
+  }, STREAM_WRITE_SYNC_LATENCY);
+
+  public static final String[] OUTPUT_DURATIONS = {
+      OP_HFLUSH,
+      OP_HSYNC
+  };
+
+  private StreamStatistics() {
+  }
+
+  /**
+   * @return the key of the sync latency bucket counting the given latency.
+   */
+  static String syncLatencyKey(long micros) {
+    for (int i = 0; i < SYNC_LATENCY_BOUNDS_US.length; i++) {
+      if (micros <= SYNC_LATENCY_BOUNDS_US[i]) {
+        return STREAM_WRITE_SYNC_LATENCY[i];
+      }
+    }
+    return STREAM_WRITE_SYNC_LATENCY[SYNC_LATENCY_BOUNDS_US.length];
+  }
+
+  private static String[] syncLatencyKeys() {
+    int n = SYNC_LATENCY_BOUNDS_US.length;
+    String[] keys = new String[n + 1];
+    for (int i = 0; i < n; i++) {
+      keys[i] = "stream_write_sync_latency_le_" + SYNC_LATENCY_BOUNDS_US[i] + "us";
+    }
+    keys[n] = "stream_write_sync_latency_gt_" + SYNC_LATENCY_BOUNDS_US[n - 1] + "us";
+    return keys;
+  }
+
+  private static String[] concat(String[] a, String[] b) {
+    String[] keys = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, keys, a.length, b.length);
+    return keys;
+  }
+
+  static IOStatisticsStore newInputStreamStatistics() {
+    return iostatisticsStore().withCounters(INPUT_COUNTERS).build();
+  }
+
+  static IOStatisticsStore newOutputStreamStatistics() {
+    return iostatisticsStore().withCounters(OUTPUT_COUNTERS).withDurationTracking(OUTPUT_DURATIONS).build();
+  }
+}
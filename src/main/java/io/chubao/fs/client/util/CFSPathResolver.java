@@ -0,0 +1,112 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import org.apache.hadoop.fs.Path;
+
+import java.net.URI;
+
+/**
+ * Resolves the Paths of a file system to the absolute paths of the volume, and builds the
+ * qualified Paths of the statuses. Absolute and qualified paths, and plain relative ones, are
+ * resolved from the URI the Path already holds, without qualifying the Path first. Paths the
+ * resolver cannot decide on, e.g. of another file system, resolve to null and must be qualified
+ * by the file system, which also rejects a wrong file system.
+ */
+public class CFSPathResolver {
+  private final String scheme;
+  private final String authority;
+
+  public CFSPathResolver(URI fsUri) {
+    this.scheme = fsUri.getScheme();
+    this.authority = fsUri.getAuthority();
+  }
+
+  /**
+   * @return the absolute path in the volume, or null if the path must be qualified first.
+   */
+  public String resolve(Path path, Path workingDir) {
+    URI uri = path.toUri();
+    String p = uri.getPath();
+    if (p == null || p.isEmpty()) {
+      return null;
+    }
+    if (uri.getScheme() == null) {
+      if (uri.getAuthority() != null) {
+        return null;
+      }
+      if (p.charAt(0) == '/') {
+        return p;
+      }
+      // The leading ".." of a relative path is kept by Path, let the file system resolve it.
+      if (p.charAt(0) == '.' || workingDir == null) {
+        return null;
+      }
+      String dir = workingDir.toUri().getPath();
+      return dir.endsWith("/") ? dir + p : dir + "/" + p;
+    }
+    if (!uri.getScheme().equalsIgnoreCase(scheme)) {
+      return null;
+    }
+    if (uri.getAuthority() != null && !uri.getAuthority().equalsIgnoreCase(authority)) {
+      return null;
+    }
+    return p.charAt(0) == '/' ? p : null;
+  }
+
+  /**
+   * @return the path if it is already qualified as resolved, otherwise a new qualified Path.
+   */
+  public Path qualify(Path path, String resolved) {
+    URI uri = path.toUri();
+    if (scheme.equals(uri.getScheme()) && equals(authority, uri.getAuthority()) && resolved.equals(uri.getPath())) {
+      return path;
+    }
+    return new Path(scheme, authority, resolved);
+  }
+
+  /**
+   * Builds the path of a child from the qualified parent. The string of the parent URI is
+   * cached by the URI, so a name which needs no quoting costs one URI parse.
+   */
+  public Path child(Path parent, String name) {
+    URI uri = parent.toUri();
+    if (!isPlainName(name)) {
+      String dir = uri.getPath();
+      return new Path(uri.getScheme(), uri.getAuthority(), dir.endsWith("/") ? dir + name : dir + "/" + name);
+    }
+    String p = uri.toString();
+    return new Path(URI.create(p.endsWith("/") ? p + name : p + "/" + name));
+  }
+
+  private static boolean isPlainName(String name) {
+    if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+        continue;
+      }
+      if ("-._~!$&'()*+,;=:@".indexOf(c) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equals(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.stream.PositionReader;
+import org.apache.hadoop.fs.CompositeCrcFileChecksum;
+import org.apache.hadoop.util.CrcComposer;
+import org.apache.hadoop.util.CrcUtil;
+import org.apache.hadoop.util.DataChecksum;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the COMPOSITE-CRC32C checksum of a file, the same value HDFS returns with
+ * dfs.checksum.combine.mode=COMPOSITE_CRC. The CRC of every block is computed by the executor,
+ * and the block CRCs are combined in order. The composite CRC does not depend on the block size,
+ * so files with the same content have the same checksum on HDFS and on any volume.
+ * The results are cached by (path, mtime, length).
+ */
+public class CompositeCrcCalculator {
+  private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+  private final ExecutorService executor;
+  private final int bytesPerCrc;
+  private final LinkedHashMap<Key, CompositeCrcFileChecksum> cache;
+
+  private static class Key {
+    private final String path;
+    private final long mtime;
+    private final long length;
+
+    Key(String path, long mtime, long length) {
+      this.path = path;
+      this.mtime = mtime;
+      this.length = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return mtime == other.mtime && length == other.length && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, mtime, length);
+    }
+  }
+
+  public CompositeCrcCalculator(ExecutorService executor, int bytesPerCrc, final int cacheSize) {
+    this.executor = executor;
+    this.bytesPerCrc = Math.max(1, bytesPerCrc);
+    this.cache = new LinkedHashMap<Key, CompositeCrcFileChecksum>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CompositeCrcFileChecksum> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * @return the cached checksum of the first length bytes of the path, or null.
+   */
+  public synchronized CompositeCrcFileChecksum getCached(String path, long mtime, long length) {
+    return cache.get(new Key(path, mtime, length));
+  }
+
+  /**
+   * Computes the checksum of the first length bytes, and caches it for the path.
+   */
+  public CompositeCrcFileChecksum compute(String path, long mtime, long length, long blockSize,
+                                          PositionReader reader) throws IOException {
+    List<Future<Integer>> futures = new ArrayList<>();
+    try {
+      for (long offset = 0; offset < length; offset += blockSize) {
+        futures.add(executor.submit(blockCrc(reader, offset, Math.min(blockSize, length - offset))));
+      }
+
+      CrcComposer composer = CrcComposer.newCrcComposer(DataChecksum.Type.CRC32C, blockSize);
+      long offset = 0;
+      for (Future<Integer> future : futures) {
+        long size = Math.min(blockSize, length - offset);
+        composer.update(future.get(), size);
+        offset += size;
+      }
+      CompositeCrcFileChecksum checksum = new CompositeCrcFileChecksum(
+          CrcUtil.readInt(composer.digest(), 0), DataChecksum.Type.CRC32C, bytesPerCrc);
+      synchronized (this) {
+        cache.put(new Key(path, mtime, length), checksum);
+      }
+      return checksum;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while computing the checksum of " + path);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Failed to compute the checksum of " + path, e.getCause());
+    } finally {
+      for (Future<Integer> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private Callable<Integer> blockCrc(final PositionReader reader, final long offset, final long len) {
+    return () -> {
+      DataChecksum sum = DataChecksum.newDataChecksum(DataChecksum.Type.CRC32C, bytesPerCrc);
+      byte[] buf = new byte[(int) Math.min(READ_BUFFER_SIZE, len)];
+      long done = 0;
+      while (done < len) {
+        int size = reader.read(offset + done, buf, 0, (int) Math.min(buf.length, len - done));
+        if (size < 0) {
+          throw new EOFException("Unexpected EOF at " + (offset + done) + " while computing the checksum.");
+        }
+        sum.update(buf, 0, size);
+        done += size;
+      }
+      return (int) sum.getValue();
+    };
+  }
+}
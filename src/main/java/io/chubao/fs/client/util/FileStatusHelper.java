@@ -14,7 +14,6 @@
 package io.chubao.fs.client.util;
 
 import io.chubao.fs.sdk.CFSStatInfo;
-import io.chubao.fs.sdk.FileStorage;
 import io.chubao.fs.sdk.exception.CFSException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -25,45 +24,17 @@ import org.apache.hadoop.fs.permission.FsPermission;
 public class FileStatusHelper {
   private static final Log log = LogFactory.getLog(FileStatusHelper.class);
 
-  public static FileStatus convert(FileStorage storage, String uri, String path, CFSStatInfo info) throws CFSException {
+  public static FileStatus convert(IdNameCache ids, Path path, CFSStatInfo info) throws CFSException {
     boolean isDir = info.getType() == CFSStatInfo.Type.DIR;
-    Path p = null;
-    if (info.getName() == null || info.getName().isEmpty()) {
-      if (uri != null) {
-        p = new Path(uri + path);
-      } else {
-        p = new Path(path);
-      }
-    } else {
-      if (uri != null) {
-        p = new Path(uri + path + "/" + info.getName());
-      } else {
-        p = new Path(path + "/" + info.getName());
-      }
-    }
     return new FileStatus(info.getSize(),
         isDir,
-        storage.getReplicaNumber(),
-        storage.getBlockSize(),
+        ids.getReplicaNumber(),
+        ids.getBlockSize(),
         info.getMtime() * 1000,
         info.getAtime() * 1000,
         new FsPermission((short) info.getMode()),
-        storage.getUser(info.getUid()),
-        storage.getGroup(info.getGid()),
-        p);
-  }
-
-  public static FileStatus convert(FileStorage storage, Path path, CFSStatInfo info) throws CFSException {
-    boolean isDir = info.getType() == CFSStatInfo.Type.DIR;
-    return new FileStatus(info.getSize(),
-        isDir,
-        storage.getReplicaNumber(),
-        storage.getBlockSize(),
-        info.getMtime(),
-        info.getAtime(),
-        new FsPermission((short) info.getMode()),
-        storage.getUser(info.getUid()),
-        storage.getGroup(info.getGid()),
+        ids.getUser(info.getUid()),
+        ids.getGroup(info.getGid()),
         path);
   }
 }
@@ -0,0 +1,97 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.sdk.FileStorage;
+import io.chubao.fs.sdk.exception.CFSException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the uid/gid to user/group name lookups of one FileStorage, and the volume constants
+ * (replica number, block size), so that converting a stat info needs no native call.
+ */
+public class IdNameCache {
+  private final FileStorage storage;
+  private final long ttlNanos;
+  private final int replicaNumber;
+  private final long blockSize;
+  private final ConcurrentHashMap<Integer, Entry> users = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, Entry> groups = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private static class Entry {
+    private final String name;
+    private final long expireAt;
+
+    Entry(String name, long expireAt) {
+      this.name = name;
+      this.expireAt = expireAt;
+    }
+  }
+
+  public IdNameCache(FileStorage storage, long ttlMs) {
+    this.storage = storage;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    this.replicaNumber = storage.getReplicaNumber();
+    this.blockSize = storage.getBlockSize();
+  }
+
+  public String getUser(int uid) throws CFSException {
+    Entry entry = users.get(uid);
+    if (isValid(entry)) {
+      hits.increment();
+      return entry.name;
+    }
+    misses.increment();
+    String name = storage.getUser(uid);
+    users.put(uid, new Entry(name, System.nanoTime() + ttlNanos));
+    return name;
+  }
+
+  public String getGroup(int gid) throws CFSException {
+    Entry entry = groups.get(gid);
+    if (isValid(entry)) {
+      hits.increment();
+      return entry.name;
+    }
+    misses.increment();
+    String name = storage.getGroup(gid);
+    groups.put(gid, new Entry(name, System.nanoTime() + ttlNanos));
+    return name;
+  }
+
+  public int getReplicaNumber() {
+    return replicaNumber;
+  }
+
+  public long getBlockSize() {
+    return blockSize;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  private boolean isValid(Entry entry) {
+    return entry != null && entry.expireAt - System.nanoTime() > 0;
+  }
+}
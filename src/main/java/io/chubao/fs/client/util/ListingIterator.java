@@ -0,0 +1,125 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.sdk.CFSStatInfo;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Iterates a directory listing, converting the entries in batches.
+ * The next batch may be converted by the executor while the caller consumes the current one.
+ * The converted entries are released from the listing, so at most two batches of converted
+ * entries are alive at a time.
+ */
+public class ListingIterator<T> implements RemoteIterator<T> {
+
+  public interface Converter<T> {
+    /**
+     * @return the converted entry, or null to skip the entry.
+     */
+    T convert(CFSStatInfo info) throws IOException;
+  }
+
+  private final CFSStatInfo[] infos;
+  private final Converter<T> converter;
+  private final int batchSize;
+  private final ExecutorService executor;
+
+  private int nextInfo = 0;
+  private List<T> batch;
+  private int batchIndex = 0;
+  private Future<List<T>> prefetch;
+
+  public ListingIterator(CFSStatInfo[] infos, Converter<T> converter, int batchSize, ExecutorService executor) {
+    this.infos = infos;
+    this.converter = converter;
+    this.batchSize = Math.max(1, batchSize);
+    this.executor = executor;
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    while (batch == null || batchIndex >= batch.size()) {
+      if (prefetch == null && nextInfo >= infos.length) {
+        return false;
+      }
+      batch = nextBatch();
+      batchIndex = 0;
+      schedulePrefetch();
+    }
+    return true;
+  }
+
+  @Override
+  public T next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException("No more entries in the listing.");
+    }
+    return batch.get(batchIndex++);
+  }
+
+  private List<T> nextBatch() throws IOException {
+    if (prefetch == null) {
+      return convertBatch();
+    }
+    Future<List<T>> future = prefetch;
+    prefetch = null;
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while listing.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void schedulePrefetch() {
+    if (executor == null || nextInfo >= infos.length) {
+      return;
+    }
+    try {
+      prefetch = executor.submit(this::convertBatch);
+    } catch (RejectedExecutionException e) {
+      prefetch = null;
+    }
+  }
+
+  private List<T> convertBatch() throws IOException {
+    int end = Math.min(infos.length, nextInfo + batchSize);
+    List<T> res = new ArrayList<>(end - nextInfo);
+    for (int i = nextInfo; i < end; i++) {
+      T item = converter.convert(infos[i]);
+      infos[i] = null;
+      if (item != null) {
+        res.add(item);
+      }
+    }
+    nextInfo = end;
+    return res;
+  }
+}
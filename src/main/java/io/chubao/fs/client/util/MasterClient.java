@@ -0,0 +1,94 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * Queries the HTTP API of the masters, trying every master in order until one answers.
+ */
+public class MasterClient {
+  private static final Log log = LogFactory.getLog(MasterClient.class);
+  private static final String VOL_STAT_PATH = "/client/volStat?name=";
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final String[] masters;
+  private final String volume;
+  private final int timeoutMs;
+
+  /**
+   * @param masters the comma separated host:port of the masters, as cfs.master.addr.
+   */
+  public MasterClient(String masters, String volume, int timeoutMs) {
+    this.masters = masters.split(",");
+    this.volume = volume;
+    this.timeoutMs = timeoutMs;
+  }
+
+  public VolumeStat getVolumeStat() throws IOException {
+    IOException last = null;
+    for (String master : masters) {
+      String url = "http://" + master.trim() + VOL_STAT_PATH + URLEncoder.encode(volume, "UTF-8");
+      HttpURLConnection conn = null;
+      try {
+        conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(timeoutMs);
+        conn.setReadTimeout(timeoutMs);
+        if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          throw new IOException("HTTP " + conn.getResponseCode() + " from " + url);
+        }
+        try (InputStream in = conn.getInputStream()) {
+          return parseVolumeStat(in);
+        }
+      } catch (IOException e) {
+        if (log.isDebugEnabled()) {
+          log.debug("Failed to get the volume stat from " + url, e);
+        }
+        last = e;
+      } finally {
+        if (conn != null) {
+          conn.disconnect();
+        }
+      }
+    }
+    throw new IOException("Failed to get the stat of the volume " + volume + " from the masters.", last);
+  }
+
+  /**
+   * Parses the reply of /client/volStat, e.g.
+   * {"code":0,"msg":"success","data":{"Name":"vol","TotalSize":10737418240,"UsedSize":1024,"InodeCount":12}}.
+   * InodeCount is only reported by the newer masters.
+   */
+  static VolumeStat parseVolumeStat(InputStream in) throws IOException {
+    JsonNode reply = mapper.readTree(in);
+    if (reply == null || reply.path("code").asInt(-1) != 0) {
+      throw new IOException("Unexpected reply of the volume stat: " + reply);
+    }
+    JsonNode data = reply.path("data");
+    if (!data.has("TotalSize") || !data.has("UsedSize")) {
+      throw new IOException("Unexpected reply of the volume stat: " + reply);
+    }
+    return new VolumeStat(data.get("TotalSize").asLong(), data.get("UsedSize").asLong(),
+        data.path("InodeCount").asLong(-1));
+  }
+}
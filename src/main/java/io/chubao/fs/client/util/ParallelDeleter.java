@@ -0,0 +1,185 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.sdk.CFSStatInfo;
+import io.chubao.fs.sdk.FileStorage;
+import io.chubao.fs.sdk.exception.CFSException;
+import io.chubao.fs.sdk.exception.CFSFileNotFoundException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes a directory tree with a fork-join pool shared by the deletes of the volume: the files of a directory are unlinked
+ * concurrently in chunks, the sub directories are deleted concurrently, and every directory
+ * is removed after its children.
+ */
+public class ParallelDeleter {
+  private static final Log log = LogFactory.getLog(ParallelDeleter.class);
+  private static final int UNLINK_CHUNK = 256;
+
+  private final FileStorage storage;
+  private final ForkJoinPool pool;
+  private final int threshold;
+  private final long progressInterval;
+
+  public ParallelDeleter(FileStorage storage, int parallelism, int threshold, long progressInterval) {
+    this.storage = storage;
+    this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    this.threshold = threshold;
+    this.progressInterval = Math.max(1, progressInterval);
+  }
+
+  /**
+   * Lists the root once, and deletes the tree in parallel if the root has at least threshold entries.
+   * The listing is reused by the delete, so a small tree costs one extra list call.
+   *
+   * @return false if the tree is small or missing and nothing was deleted, the caller removes it
+   * with a single rmdir.
+   */
+  public boolean deleteIfLarge(String path) throws IOException {
+    CFSStatInfo[] children;
+    try {
+      children = storage.list(path);
+    } catch (CFSFileNotFoundException e) {
+      return false;
+    } catch (CFSException e) {
+      throw new IOException("Failed to list the dir: " + path, e);
+    }
+    if (children.length < threshold) {
+      return false;
+    }
+    Progress progress = new Progress(path);
+    try {
+      pool.invoke(new DeleteDirTask(path, children, progress));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    log.info("Deleted " + path + ": " + progress);
+    return true;
+  }
+
+  public void close() {
+    pool.shutdownNow();
+  }
+
+  private class DeleteDirTask extends RecursiveAction {
+    private final String path;
+    private final Progress progress;
+
+    /** The children listed by the caller, or null to list them. */
+    private final CFSStatInfo[] listed;
+
+    DeleteDirTask(String path, CFSStatInfo[] listed, Progress progress) {
+      this.path = path;
+      this.listed = listed;
+      this.progress = progress;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        CFSStatInfo[] children = listed != null ? listed : storage.list(path);
+        List<RecursiveAction> tasks = new ArrayList<>();
+        List<String> files = new ArrayList<>(Math.min(children.length, UNLINK_CHUNK));
+        for (CFSStatInfo child : children) {
+          String p = childPath(path, child.getName());
+          if (child.getType() == CFSStatInfo.Type.DIR) {
+            tasks.add(new DeleteDirTask(p, null, progress));
+            continue;
+          }
+          files.add(p);
+          if (files.size() == UNLINK_CHUNK) {
+            tasks.add(new UnlinkTask(files, progress));
+            files = new ArrayList<>(UNLINK_CHUNK);
+          }
+        }
+        if (!files.isEmpty()) {
+          tasks.add(new UnlinkTask(files, progress));
+        }
+        invokeAll(tasks);
+        storage.rmdir(path, false);
+        progress.dirDeleted();
+      } catch (CFSFileNotFoundException e) {
+        if (log.isDebugEnabled()) {
+          log.debug("Skip the deleted dir: " + path);
+        }
+      } catch (CFSException e) {
+        throw new UncheckedIOException(new IOException("Failed to delete the dir: " + path, e));
+      }
+    }
+  }
+
+  private class UnlinkTask extends RecursiveAction {
+    private final List<String> files;
+    private final Progress progress;
+
+    UnlinkTask(List<String> files, Progress progress) {
+      this.files = files;
+      this.progress = progress;
+    }
+
+    @Override
+    protected void compute() {
+      for (String file : files) {
+        try {
+          storage.unlink(file);
+        } catch (CFSFileNotFoundException e) {
+          continue;
+        } catch (CFSException e) {
+          throw new UncheckedIOException(new IOException("Failed to delete the file: " + file, e));
+        }
+        progress.fileDeleted();
+      }
+    }
+  }
+
+  private class Progress {
+    private final String root;
+    private final AtomicLong files = new AtomicLong(0);
+    private final AtomicLong dirs = new AtomicLong(0);
+
+    Progress(String root) {
+      this.root = root;
+    }
+
+    void fileDeleted() {
+      long n = files.incrementAndGet();
+      if (n % progressInterval == 0) {
+        log.info("Deleting " + root + ": " + this);
+      }
+    }
+
+    void dirDeleted() {
+      dirs.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+      return files.get() + " files, " + dirs.get() + " dirs";
+    }
+  }
+
+  private static String childPath(String parent, String name) {
+    return parent.endsWith("/") ? parent + name : parent + "/" + name;
+  }
+}
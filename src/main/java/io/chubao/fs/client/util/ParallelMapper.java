@@ -0,0 +1,108 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps a list of inputs concurrently on helpers of an executor and the calling thread,
+ * which take the next input from a shared index.
+ * The caller takes inputs too, and skips the helpers which have not started when it runs out of inputs,
+ * so a busy executor cannot stall the call. A helper which started is always waited for, it may hold
+ * an input whose result is not written yet.
+ */
+public final class ParallelMapper {
+  public interface Mapper<T, R> {
+    R apply(T input) throws IOException;
+  }
+
+  private ParallelMapper() {
+  }
+
+  /**
+   * Fills results[i] with the result of inputs[i], on up to threads threads including the caller.
+   * The first failure is thrown, and the other threads stop taking inputs.
+   */
+  public static <T, R> void map(final List<T> inputs, final R[] results, final Mapper<T, R> mapper,
+                                ExecutorService executor, int threads) throws IOException {
+    final int size = inputs.size();
+    final AtomicInteger next = new AtomicInteger(0);
+    int helpers = Math.max(0, Math.min(size, threads) - 1);
+    List<FutureTask<Void>> tasks = new ArrayList<>(helpers);
+    List<AtomicBoolean> claims = new ArrayList<>(helpers);
+    try {
+      for (int i = 0; i < helpers; i++) {
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        FutureTask<Void> task = new FutureTask<>(() -> {
+          if (claimed.compareAndSet(false, true)) {
+            work(inputs, results, mapper, next);
+          }
+          return null;
+        });
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          break;
+        }
+        tasks.add(task);
+        claims.add(claimed);
+      }
+
+      work(inputs, results, mapper, next);
+      for (int i = 0; i < tasks.size(); i++) {
+        if (!claims.get(i).compareAndSet(false, true)) {
+          tasks.get(i).get();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while mapping " + size + " inputs.");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } finally {
+      next.set(size);
+      for (AtomicBoolean claimed : claims) {
+        claimed.set(true);
+      }
+    }
+  }
+
+  private static <T, R> void work(List<T> inputs, R[] results, Mapper<T, R> mapper, AtomicInteger next)
+      throws IOException {
+    int i;
+    while ((i = next.getAndIncrement()) < results.length) {
+      try {
+        results[i] = mapper.apply(inputs.get(i));
+      } catch (IOException | RuntimeException e) {
+        next.set(results.length);
+        throw e;
+      }
+    }
+  }
+}
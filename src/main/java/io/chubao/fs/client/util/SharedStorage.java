@@ -0,0 +1,188 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.cache.StatCache;
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.sdk.FileStorage;
+import io.chubao.fs.sdk.StorageConfig;
+import io.chubao.fs.sdk.exception.CFSException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A native storage handle shared by all the file systems of the process on the same
+ * (masters, volume), e.g. the instances Hadoop caches for every proxy user.
+ * Every acquire() must be paired with one release(), the storage is closed by the last release.
+ * The handle also shares the uid/gid name cache, the stat cache, the io executor and the parallel deleter,
+ * the uid/gid of a user is resolved once per handle. As the stat cache is shared, the changes through
+ * any file system of the volume invalidate it.
+ */
+public class SharedStorage {
+  private static final Log log = LogFactory.getLog(SharedStorage.class);
+  private static final Map<String, Entry> registry = new HashMap<>();
+
+  private final String key;
+  private final FileStorage storage;
+  private final IdNameCache ids;
+  private final StatCache statCache;
+  private final ExecutorService executor;
+  private final ParallelDeleter parallelDeleter;
+  private final ConcurrentHashMap<String, Integer> uids = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Integer> gids = new ConcurrentHashMap<>();
+
+  /**
+   * The handle of a key, opened once by its first acquire() outside of the registry lock,
+   * the other acquires of the key wait for it.
+   */
+  private static class Entry {
+    private final CompletableFuture<SharedStorage> opened = new CompletableFuture<>();
+    private int refCount;
+  }
+
+  private SharedStorage(String key, FileStorage storage, CFSConfig cfg) {
+    this.key = key;
+    this.storage = storage;
+    this.ids = new IdNameCache(storage, cfg.getIdCacheTTL());
+    this.statCache = cfg.getStatCacheEnable()
+        ? new StatCache(cfg.getStatCacheSize(), cfg.getStatCacheTTL(), cfg.getStatCacheNegative()) : null;
+    this.executor = DaemonThreadFactory.newPool("cfs-io", cfg.getIOThreads());
+    this.parallelDeleter = cfg.getParallelDeleteEnable() ? new ParallelDeleter(storage, cfg.getDeleteParallelism(),
+        cfg.getParallelDeleteThreshold(), cfg.getDeleteProgressInterval()) : null;
+  }
+
+  /**
+   * Returns the handle of the volume, opening the storage if no file system holds it.
+   * The other options of the storage config are taken from the first file system.
+   */
+  public static SharedStorage acquire(CFSConfig cfg, StorageConfig sconfig) throws CFSException {
+    String key = cfg.getCFSMasterAddr() + "/" + cfg.getCFSVoumeName();
+    Entry entry;
+    boolean open;
+    synchronized (registry) {
+      entry = registry.get(key);
+      open = entry == null;
+      if (open) {
+        entry = new Entry();
+        registry.put(key, entry);
+      }
+      entry.refCount++;
+    }
+    if (open) {
+      try {
+        entry.opened.complete(new SharedStorage(key, newStorageFactory(cfg).open(cfg, sconfig), cfg));
+        log.info("Opened the storage of " + key);
+      } catch (CFSException | RuntimeException e) {
+        synchronized (registry) {
+          registry.remove(key, entry);
+        }
+        entry.opened.completeExceptionally(e);
+        throw e;
+      }
+    }
+    try {
+      return entry.opened.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof CFSException) {
+        throw (CFSException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static StorageFactory newStorageFactory(CFSConfig cfg) {
+    String name = cfg.getStorageFactory();
+    if (name == null) {
+      return new NativeStorageFactory();
+    }
+    try {
+      return (StorageFactory) Class.forName(name).getConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw new IllegalArgumentException("Invalid cfs.storage.factory: " + name, e);
+    }
+  }
+
+  public void release() {
+    synchronized (registry) {
+      if (--registry.get(key).refCount > 0) {
+        return;
+      }
+      registry.remove(key);
+    }
+    executor.shutdown();
+    if (parallelDeleter != null) {
+      parallelDeleter.close();
+    }
+    try {
+      storage.close();
+      log.info("Closed the storage of " + key);
+    } catch (CFSException e) {
+      log.warn("Failed to close the storage of " + key, e);
+    }
+  }
+
+  public FileStorage getStorage() {
+    return storage;
+  }
+
+  public IdNameCache getIds() {
+    return ids;
+  }
+
+  /**
+   * @return the stat cache, or null if it is disabled.
+   */
+  public StatCache getStatCache() {
+    return statCache;
+  }
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * @return the parallel deleter, or null if parallel deletes are disabled.
+   */
+  public ParallelDeleter getParallelDeleter() {
+    return parallelDeleter;
+  }
+
+  public int getUid(String user) throws CFSException {
+    Integer uid = uids.get(user);
+    if (uid == null) {
+      uid = storage.getUid(user);
+      uids.put(user, uid);
+    }
+    return uid;
+  }
+
+  public int getGid(String user) throws CFSException {
+    Integer gid = gids.get(user);
+    if (gid == null) {
+      gid = storage.getGidByUser(user);
+      gids.put(user, gid);
+    }
+    return gid;
+  }
+}
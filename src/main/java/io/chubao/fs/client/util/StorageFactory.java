@@ -0,0 +1,28 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.sdk.FileStorage;
+import io.chubao.fs.sdk.StorageConfig;
+import io.chubao.fs.sdk.exception.CFSException;
+
+/**
+ * Opens the storage of a volume. The default opens it with the native SDK,
+ * cfs.storage.factory may name another implementation, e.g. an in-process storage for benchmarks.
+ * An implementation must have a public no-arg constructor.
+ */
+public interface StorageFactory {
+  FileStorage open(CFSConfig cfg, StorageConfig sconfig) throws CFSException;
+}
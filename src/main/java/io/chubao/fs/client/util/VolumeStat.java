@@ -0,0 +1,53 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+/**
+ * The capacity and usage of a volume, as reported by the master.
+ */
+public class VolumeStat {
+  private final long totalSize;
+  private final long usedSize;
+  private final long inodeCount;
+
+  /**
+   * @param inodeCount the number of inodes, or -1 if the master does not report it.
+   */
+  public VolumeStat(long totalSize, long usedSize, long inodeCount) {
+    this.totalSize = totalSize;
+    this.usedSize = usedSize;
+    this.inodeCount = inodeCount;
+  }
+
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  public long getUsedSize() {
+    return usedSize;
+  }
+
+  public long getRemainingSize() {
+    return Math.max(0, totalSize - usedSize);
+  }
+
+  public long getInodeCount() {
+    return inodeCount;
+  }
+
+  @Override
+  public String toString() {
+    return "total: " + totalSize + " used: " + usedSize + " inodes: " + inodeCount;
+  }
+}
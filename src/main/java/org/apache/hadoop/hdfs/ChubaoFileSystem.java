@@ -13,15 +13,32 @@
 // permissions and limitations under the License.
 package org.apache.hadoop.hdfs;
 
+import io.chubao.fs.client.cache.DirCache;
+import io.chubao.fs.client.cache.FileTailCache;
+import io.chubao.fs.client.cache.LocalBlockCache;
+import io.chubao.fs.client.cache.StatCache;
+import io.chubao.fs.client.cache.VolumeStatCache;
 import io.chubao.fs.client.stream.CFSDataInputStream;
+import io.chubao.fs.client.stream.CFSDataOutputStream;
+import io.chubao.fs.client.stream.ReadCache;
+import io.chubao.fs.client.stream.StreamStatistics;
 import io.chubao.fs.client.util.FsPermissionHelper;
 import io.chubao.fs.client.config.CFSConfig;
 import io.chubao.fs.sdk.*;
 import io.chubao.fs.sdk.exception.CFSException;
 import io.chubao.fs.sdk.exception.CFSFileNotFoundException;
-import io.chubao.fs.sdk.stream.CFSInputStream;
 import io.chubao.fs.sdk.stream.CFSOutputStream;
+import io.chubao.fs.client.util.CompositeCrcCalculator;
+import io.chubao.fs.client.util.DaemonThreadFactory;
+import io.chubao.fs.client.util.CFSPathResolver;
 import io.chubao.fs.client.util.FileStatusHelper;
+import io.chubao.fs.client.util.IdNameCache;
+import io.chubao.fs.client.util.ListingIterator;
+import io.chubao.fs.client.util.MasterClient;
+import io.chubao.fs.client.util.ParallelDeleter;
+import io.chubao.fs.client.util.ParallelMapper;
+import io.chubao.fs.client.util.SharedStorage;
+import io.chubao.fs.client.util.VolumeStat;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -30,31 +47,89 @@ import org.apache.hadoop.fs.*;
 import org.apache.hadoop.fs.permission.AclEntry;
 import org.apache.hadoop.fs.permission.AclStatus;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.statistics.IOStatisticsLogging;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.StoreStatisticNames;
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+import org.apache.hadoop.util.functional.RemoteIterators;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.Progressable;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.iostatisticsStore;
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.trackDuration;
+import static org.apache.hadoop.fs.statistics.impl.IOStatisticsBinding.trackDurationOfInvocation;
 
 @InterfaceAudience.LimitedPrivate({"MapReduce", "HBase"})
 @InterfaceStability.Unstable
-public class ChubaoFileSystem extends FileSystem {
+public class ChubaoFileSystem extends FileSystem implements IOStatisticsSource {
 
   private static final Log log = LogFactory.getLog(ChubaoFileSystem.class);
   private final String CFS_SCHEME_NAME = "cfs";
   private final String CFS_SITE_CONFIG = "cfs-site.xml";
 
+  private static final String OP_GET_FILE_STATUS = "getFileStatus";
+  private static final String OP_DELETE = "delete";
+  private static final String OP_RENAME = "rename";
+  private static final String OP_BULK_GET_FILE_STATUS = "op_bulk_get_file_status";
+  private static final PathFilter ACCEPT_ALL = path -> true;
+
+  private static final String CFS_INIT_ASYNC_KEY = "fs.cfs.init.async";
+  private static final boolean CFS_INIT_ASYNC_DEFAULT = false;
+  private static final ExecutorService INIT_EXECUTOR = DaemonThreadFactory.newPool("cfs-init", 4);
+
   private URI uri;
+  private CFSPathResolver resolver;
   private CFSConfig cfg;
-  private CFSClient client;
+  private SharedStorage shared;
   private String userHomePrefix;
   private Path workingDir;
   private FileStorage storage;
-  private int uid;
-  private int gid;
+  private IdNameCache ids;
+  private ParallelDeleter parallelDeleter;
+  private String userName;
+  private volatile int uid = -1;
+  private volatile int gid = -1;
+  private volatile CompletableFuture<Void> initialized;
+  private ExecutorService ioExecutor;
+  private StatCache statCache;
+  private LocalBlockCache blockCache;
+  private FileTailCache tailCache;
+  private DirCache dirCache;
+  private CompositeCrcCalculator checksums;
+  private VolumeStatCache volumeStat;
+  private Set<String> statCacheBypassOps;
+  private final IOStatisticsStore iostats = iostatisticsStore()
+      .withDurationTracking(
+          StoreStatisticNames.OP_GET_FILE_STATUS,
+          StoreStatisticNames.OP_LIST_STATUS,
+          StoreStatisticNames.OP_LIST_LOCATED_STATUS,
+          StoreStatisticNames.OP_MKDIRS,
+          StoreStatisticNames.OP_OPEN,
+          StoreStatisticNames.OP_APPEND,
+          StoreStatisticNames.OP_CREATE,
+          StoreStatisticNames.OP_CREATE_NON_RECURSIVE,
+          StoreStatisticNames.OP_DELETE,
+          StoreStatisticNames.OP_RENAME,
+          StoreStatisticNames.OP_GET_FILE_CHECKSUM,
+          StoreStatisticNames.OP_GET_STATUS,
+          StoreStatisticNames.OP_GLOB_STATUS,
+          OP_BULK_GET_FILE_STATUS)
+      .withCounters(StreamStatistics.INPUT_COUNTERS)
+      .withCounters(StreamStatistics.OUTPUT_COUNTERS)
+      .withDurationTracking(StreamStatistics.OUTPUT_DURATIONS)
+      .build();
 
   @Override
   public URI getUri() {
@@ -68,6 +143,7 @@ public class ChubaoFileSystem extends FileSystem {
       throw new IllegalArgumentException("Not support the scheme: " + uri.toString() + ", you may be use [cfs://]");
     }
     this.uri = URI.create(uri.getScheme() + "://" + uri.getAuthority());
+    this.resolver = new CFSPathResolver(this.uri);
     super.initialize(uri, config);
     String hadoopConfDir = System.getenv("HADOOP_CONF_DIR");
     if (hadoopConfDir == null) {
@@ -78,27 +154,125 @@ public class ChubaoFileSystem extends FileSystem {
       throw new IllegalArgumentException("HADOOP_CONF_DIR env or property is not set!");
     }
     String configFile = hadoopConfDir + File.separator + CFS_SITE_CONFIG;
-    String userName = System.getProperty("user.name");
+    UserGroupInformation currentUser = UserGroupInformation.getCurrentUser();
+    if (config.getBoolean(CFS_INIT_ASYNC_KEY, CFS_INIT_ASYNC_DEFAULT)) {
+      initialized = CompletableFuture.runAsync(() -> {
+        try {
+          initStorage(configFile, currentUser);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, INIT_EXECUTOR);
+    } else {
+      initStorage(configFile, currentUser);
+      initialized = CompletableFuture.completedFuture(null);
+    }
+  }
+
+  /**
+   * Loads cfs-site.xml and opens the storage, in the background if fs.cfs.init.async is true.
+   * The uid/gid of the user are resolved by the first operation which needs them.
+   */
+  private void initStorage(String configFile, UserGroupInformation currentUser) throws IOException {
+    long start = System.nanoTime();
     try {
       cfg = new CFSConfig();
       cfg.load(configFile);
-
-      client = new CFSClient(cfg.getCFSlibsdk());
-      client.init();
-      StorageConfig sconfig = getStorageConfig(cfg);
-      storage = client.openFileStorage(sconfig);
-      uid = storage.getUid(userName);
-      gid = storage.getGidByUser(userName);
+      long loaded = System.nanoTime();
+
+      shared = SharedStorage.acquire(cfg, getStorageConfig(cfg));
+      long opened = System.nanoTime();
+      storage = shared.getStorage();
+      ids = shared.getIds();
+      ioExecutor = shared.getExecutor();
+      parallelDeleter = shared.getParallelDeleter();
+      userName = currentUser.getShortUserName();
       userHomePrefix = cfg.getUserHomePrefix();
-      workingDir = getHomeDirectory();
-      UserGroupInformation currentUser = UserGroupInformation.getCurrentUser();
+      if (workingDir == null) {
+        workingDir = homeDirectory();
+      }
       cfg.setCurrentUser(currentUser.getUserName());
+      dirCache = new DirCache(cfg.getDirCacheSize());
+      MasterClient master = new MasterClient(cfg.getCFSMasterAddr(), cfg.getCFSVoumeName(), cfg.getMasterHttpTimeout());
+      volumeStat = new VolumeStatCache(master::getVolumeStat, ioExecutor, cfg.getVolumeStatRefresh());
+      if (cfg.getChecksumEnable()) {
+        checksums = new CompositeCrcCalculator(ioExecutor, cfg.getChecksumBytesPerCrc(), cfg.getChecksumCacheSize());
+      }
+      statCache = shared.getStatCache();
+      if (statCache != null) {
+        statCacheBypassOps = cfg.getStatCacheBypassOps();
+      }
+      if (cfg.getTailCacheEnable()) {
+        tailCache = new FileTailCache(cfg.getTailCacheTailSize(), cfg.getTailCacheCapacity());
+      }
+      if (cfg.getBlockCacheEnable()) {
+        blockCache = LocalBlockCache.get(cfg.getBlockCacheDir(), cfg.getBlockCacheCapacity(),
+            cfg.getBlockCacheBlockSize(), cfg.getBlockCacheLoadThreads());
+      }
+      long end = System.nanoTime();
+      log.info("Initialized ChubaoFileSystem in " + TimeUnit.NANOSECONDS.toMillis(end - start) + "ms"
+          + ", load config: " + TimeUnit.NANOSECONDS.toMillis(loaded - start) + "ms"
+          + ", open storage: " + TimeUnit.NANOSECONDS.toMillis(opened - loaded) + "ms"
+          + ", setup: " + TimeUnit.NANOSECONDS.toMillis(end - opened) + "ms.");
     } catch (Exception e) {
       log.error(e.getMessage(), e);
+      if (shared != null) {
+        shared.release();
+        shared = null;
+      }
       throw new IOException("Failed to initialize ChubaoFileSystem", e);
     }
   }
 
+  /**
+   * Waits until the storage is opened, only the first operation of an asynchronously
+   * initialized file system may actually wait.
+   */
+  private void awaitInit() throws IOException {
+    CompletableFuture<Void> future = initialized;
+    if (future.isDone() && !future.isCompletedExceptionally()) {
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while initializing ChubaoFileSystem.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Failed to initialize ChubaoFileSystem", cause);
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Waited " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms for the initialization.");
+    }
+  }
+
+  private void awaitInitUnchecked() {
+    try {
+      awaitInit();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private int uid() throws CFSException {
+    if (uid < 0) {
+      uid = shared.getUid(userName);
+    }
+    return uid;
+  }
+
+  private int gid() throws CFSException {
+    if (gid < 0) {
+      gid = shared.getGid(userName);
+    }
+    return gid;
+  }
+
   private StorageConfig getStorageConfig(CFSConfig cfg) {
     StorageConfig config = new StorageConfig();
     config.setMasters(cfg.getCFSMasterAddr());
@@ -120,7 +294,32 @@ public class ChubaoFileSystem extends FileSystem {
   @Override
   public void close() throws IOException {
     log.info("Close ChubaoFileStem");
+    if (ids != null && log.isDebugEnabled()) {
+      log.debug("uid/gid name cache hits: " + ids.getHits() + " misses: " + ids.getMisses());
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("IOStatistics of " + uri + ": " + IOStatisticsLogging.ioStatisticsToPrettyString(iostats));
+    }
     super.close();
+    try {
+      awaitInit();
+    } catch (IOException e) {
+      log.debug("Close the file system which failed to initialize.");
+    }
+    synchronized (this) {
+      if (shared != null) {
+        shared.release();
+        shared = null;
+      }
+    }
+  }
+
+  /**
+   * The durations of the operations, and the statistics of the streams aggregated on close.
+   */
+  @Override
+  public IOStatisticsStore getIOStatistics() {
+    return iostats;
   }
 
   @Override
@@ -130,28 +329,123 @@ public class ChubaoFileSystem extends FileSystem {
 
   @Override
   public Path getHomeDirectory() {
-    return makeQualified(new Path(userHomePrefix + "/" + System.getProperty("user.name")));
+    awaitInitUnchecked();
+    return homeDirectory();
+  }
+
+  private Path homeDirectory() {
+    return new Path(userHomePrefix + "/" + userName).makeQualified(uri, null);
   }
 
   @Override
   public FileStatus getFileStatus(Path path) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_GET_FILE_STATUS, () -> innerGetFileStatus(path));
+  }
+
+  private FileStatus innerGetFileStatus(Path path) throws IOException {
     if (log.isDebugEnabled()) {
       log.debug("getFileStatus:" + path.toString());
     }
     try {
       String pathStr = parsePath(path);
-      CFSStatInfo info = storage.stat(pathStr);
+      CFSStatInfo info = stat(pathStr, OP_GET_FILE_STATUS);
       if (info == null) {
         throw new FileNotFoundException(path.toString());
       }
-      return FileStatusHelper.convert(storage, (uri == null ? null : uri.toString()), pathStr, info);
+      return FileStatusHelper.convert(ids, resolver.qualify(path, pathStr), info);
     } catch (CFSException ex) {
       throw new IOException(ex);
     }
   }
 
+  /**
+   * Gets the statuses of many paths concurrently, on up to cfs.io.threads threads of the io
+   * pool and the calling thread. The statuses are in the order of the paths, and the status of
+   * a missing path is null.
+   */
+  public FileStatus[] getFileStatuses(List<Path> paths) throws IOException {
+    return trackDuration(iostats, OP_BULK_GET_FILE_STATUS, () -> innerGetFileStatuses(paths));
+  }
+
+  private FileStatus[] innerGetFileStatuses(List<Path> paths) throws IOException {
+    awaitInit();
+    FileStatus[] statuses = new FileStatus[paths.size()];
+    ParallelMapper.map(paths, statuses, path -> {
+      try {
+        return innerGetFileStatus(path);
+      } catch (FileNotFoundException e) {
+        return null;
+      }
+    }, ioExecutor, cfg.getIOThreads());
+    return statuses;
+  }
+
+  @Override
+  public FileStatus[] globStatus(Path pathPattern) throws IOException {
+    return globStatus(pathPattern, ACCEPT_ALL, false);
+  }
+
+  @Override
+  public FileStatus[] globStatus(Path pathPattern, PathFilter filter) throws IOException {
+    return globStatus(pathPattern, filter, true);
+  }
+
+  /**
+   * A pattern whose braces expand to literal paths, e.g. the partitions selected by a query,
+   * is resolved with one bulk getFileStatuses, the other patterns are left to the Globber.
+   */
+  private FileStatus[] globStatus(Path pathPattern, PathFilter filter, boolean filtered) throws IOException {
+    List<Path> paths = expandLiterals(pathPattern);
+    if (paths == null) {
+      return filtered ? super.globStatus(pathPattern, filter) : super.globStatus(pathPattern);
+    }
+    return trackDuration(iostats, StoreStatisticNames.OP_GLOB_STATUS, () -> {
+      List<FileStatus> results = new ArrayList<>(paths.size());
+      for (FileStatus status : innerGetFileStatuses(paths)) {
+        if (status != null && filter.accept(status.getPath())) {
+          results.add(status);
+        }
+      }
+      FileStatus[] ret = results.toArray(new FileStatus[0]);
+      Arrays.sort(ret);
+      return ret;
+    });
+  }
+
+  /**
+   * @return the paths of a pattern which expands to more than one path without wildcards, or null.
+   */
+  private static List<Path> expandLiterals(Path pattern) throws IOException {
+    URI patternUri = pattern.toUri();
+    String patternPath = patternUri.getPath();
+    if (patternPath.indexOf('{') < 0 || patternPath.indexOf('\\') >= 0) {
+      return null;
+    }
+    List<String> flattened = GlobExpander.expand(patternPath);
+    if (flattened.size() <= 1) {
+      return null;
+    }
+    List<Path> paths = new ArrayList<>(flattened.size());
+    for (String flat : flattened) {
+      if (flat.isEmpty()) {
+        return null;
+      }
+      for (String component : flat.split(Path.SEPARATOR)) {
+        if (!component.isEmpty() && new GlobFilter(component).hasPattern()) {
+          return null;
+        }
+      }
+      paths.add(new Path(patternUri.getScheme(), patternUri.getAuthority(), flat));
+    }
+    return paths;
+  }
+
   @Override
   public FileStatus[] listStatus(Path path) throws FileNotFoundException, IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_LIST_STATUS, () -> innerListStatus(path));
+  }
+
+  private FileStatus[] innerListStatus(Path path) throws FileNotFoundException, IOException {
     if (log.isDebugEnabled()) {
       log.debug("list:" + path.toString());
     }
@@ -164,12 +458,11 @@ public class ChubaoFileSystem extends FileSystem {
         return fstatus;
       }
 
-      String pathStr = parsePath(path);
-      CFSStatInfo[] infos = storage.list(pathStr);
+      CFSStatInfo[] infos = storage.list(parsePath(path));
+      Path parent = status.getPath();
       fstatus = new FileStatus[infos.length];
       for (int i = 0; i < infos.length; i++) {
-        fstatus[i] = FileStatusHelper.convert(storage, (uri == null ? null : uri.toString()), pathStr, infos[i]);
-        log.info("==>" + fstatus[i]);
+        fstatus[i] = FileStatusHelper.convert(ids, resolver.child(parent, infos[i].getName()), infos[i]);
       }
 
       return fstatus;
@@ -180,6 +473,73 @@ public class ChubaoFileSystem extends FileSystem {
     }
   }
 
+  @Override
+  public RemoteIterator<FileStatus> listStatusIterator(Path path) throws FileNotFoundException, IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_LIST_STATUS, () -> innerListStatusIterator(path));
+  }
+
+  private RemoteIterator<FileStatus> innerListStatusIterator(Path path) throws FileNotFoundException, IOException {
+    if (log.isDebugEnabled()) {
+      log.debug("listStatusIterator:" + path.toString());
+    }
+    return listIterator(path, info -> info);
+  }
+
+  @Override
+  protected RemoteIterator<LocatedFileStatus> listLocatedStatus(Path path, final PathFilter filter)
+      throws FileNotFoundException, IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_LIST_LOCATED_STATUS, () -> innerListLocatedStatus(path, filter));
+  }
+
+  private RemoteIterator<LocatedFileStatus> innerListLocatedStatus(Path path, final PathFilter filter)
+      throws FileNotFoundException, IOException {
+    if (log.isDebugEnabled()) {
+      log.debug("listLocatedStatus:" + path.toString());
+    }
+    return listIterator(path, status -> {
+      if (!filter.accept(status.getPath())) {
+        return null;
+      }
+      BlockLocation[] locations = status.isFile() ? getFileBlockLocations(status, 0, status.getLen()) : null;
+      return new LocatedFileStatus(status, locations);
+    });
+  }
+
+  private interface StatusMapper<T> {
+    T map(FileStatus status) throws IOException;
+  }
+
+  /**
+   * Lists the path lazily, the entries are converted in batches of cfs.list.batch.size,
+   * and the next batch is converted in the background if cfs.list.prefetch is enabled.
+   */
+  private <T> RemoteIterator<T> listIterator(Path path, StatusMapper<T> mapper)
+      throws FileNotFoundException, IOException {
+    FileStatus status = getFileStatus(path);
+    if (!status.isDirectory()) {
+      T item = mapper.map(status);
+      List<T> items = item == null ? Collections.<T>emptyList() : Collections.singletonList(item);
+      return RemoteIterators.remoteIteratorFromIterable(items);
+    }
+
+    final Path parent = status.getPath();
+    CFSStatInfo[] infos;
+    try {
+      infos = storage.list(parsePath(path));
+    } catch (CFSFileNotFoundException e) {
+      throw new FileNotFoundException(e.getMessage());
+    } catch (CFSException ex) {
+      throw new IOException(ex);
+    }
+    return new ListingIterator<>(infos, info -> {
+      try {
+        return mapper.map(FileStatusHelper.convert(ids, resolver.child(parent, info.getName()), info));
+      } catch (CFSException ex) {
+        throw new IOException(ex);
+      }
+    }, cfg.getListBatchSize(), cfg.getListPrefetch() ? ioExecutor : null);
+  }
+
   @Override
   public boolean mkdirs(Path f) throws IOException {
     return mkdirs(f, FsPermissionHelper.getDirDefault(cfg));
@@ -187,6 +547,10 @@ public class ChubaoFileSystem extends FileSystem {
 
   @Override
   public boolean mkdirs(Path path, FsPermission permission) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_MKDIRS, () -> innerMkdirs(path, permission));
+  }
+
+  private boolean innerMkdirs(Path path, FsPermission permission) throws IOException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("Mkdirs: " + path.toString() + " permission: " + permission.toShort());
     }
@@ -199,7 +563,15 @@ public class ChubaoFileSystem extends FileSystem {
        */
       FsPermission umask = FsPermission.getUMask(getConf());
       short perm = permission.applyUMask(umask).toShort();
-      return storage.mkdirs(parsePath(path), perm, uid, gid);
+      String pathStr = parsePath(path);
+      boolean res = storage.mkdirs(pathStr, perm, uid(), gid());
+      if (statCache != null) {
+        statCache.invalidateWithAncestors(pathStr);
+      }
+      if (res) {
+        dirCache.add(pathStr);
+      }
+      return res;
     } catch (Exception e) {
       log.error("Failed to mkdirs:" + path.toString());
       throw new IOException(e);
@@ -208,22 +580,60 @@ public class ChubaoFileSystem extends FileSystem {
 
   @Override
   public FSDataInputStream open(Path path, int bufferSize) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_OPEN, () -> innerOpen(path, bufferSize));
+  }
+
+  private FSDataInputStream innerOpen(Path path, int bufferSize) throws IOException {
     if (log.isDebugEnabled()) {
       log.debug("open:" + path.toString() + " buffsize:" + bufferSize);
     }
     statistics.incrementReadOps(1);
     try {
-      CFSFile cfile = storage.open(parsePath(path), FileStorage.O_RDONLY, 0, uid, gid);
-      CFSInputStream input = new CFSInputStream(cfile);
-      return new FSDataInputStream(new CFSDataInputStream(input));
+      String pathStr = parsePath(path);
+      int uid = uid();
+      int gid = gid();
+      // Stat before the open and cache only if the opened file has the same size,
+      // so a file replaced in between is not cached under the older version.
+      CFSStatInfo info = blockCache != null || tailCache != null ? storage.stat(pathStr) : null;
+      CFSFile cfile = storage.open(pathStr, FileStorage.O_RDONLY, 0, uid, gid);
+      List<ReadCache> caches = info != null && info.getSize() == cfile.getFileSize()
+          ? readCaches(pathStr, info) : Collections.<ReadCache>emptyList();
+      return new FSDataInputStream(new CFSDataInputStream(cfile,
+          () -> storage.open(pathStr, FileStorage.O_RDONLY, 0, uid, gid), caches, cfg, bufferSize,
+          ioExecutor, statistics, iostats));
     } catch (Exception ex) {
       log.error("Failed to open:" + path.toString());
       throw new IOException(ex);
     }
   }
 
+  /**
+   * @return the caches of this version of the file, the tail cache first.
+   * The mtime is in seconds, so the files changed recently are not cached,
+   * they may be rewritten with the same mtime and length.
+   */
+  private List<ReadCache> readCaches(String pathStr, CFSStatInfo info) {
+    if (info.getType() != CFSStatInfo.Type.REG
+        || System.currentTimeMillis() / 1000 - info.getMtime() < cfg.getCacheMinFileAge()) {
+      return Collections.emptyList();
+    }
+    List<ReadCache> caches = new ArrayList<>(2);
+    if (tailCache != null) {
+      caches.add(tailCache.file(pathStr, info.getMtime(), info.getSize()));
+    }
+    if (blockCache != null) {
+      caches.add(blockCache.file(cfg.getCFSMasterAddr() + "/" + cfg.getCFSVoumeName() + pathStr,
+          info.getMtime(), info.getSize()));
+    }
+    return caches;
+  }
+
   @Override
   public FSDataOutputStream append(Path path, int bufferSize, Progressable progress) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_APPEND, () -> innerAppend(path, bufferSize, progress));
+  }
+
+  private FSDataOutputStream innerAppend(Path path, int bufferSize, Progressable progress) throws IOException {
     if (log.isDebugEnabled()) {
       log.debug("append:" + path.toString() + " buffsize:" + bufferSize);
     }
@@ -233,9 +643,10 @@ public class ChubaoFileSystem extends FileSystem {
         progress.progress();
       }
       int flags = FileStorage.O_WRONLY | FileStorage.O_APPEND;
-      CFSFile cfile = storage.open(parsePath(path), flags, cfg.CFS_DEFAULT_FILE_PERMISSION, uid, gid);
-      CFSOutputStream output = new CFSOutputStream(cfile);
-      return new FSDataOutputStream(output, statistics);
+      String pathStr = parsePath(path);
+      CFSFile cfile = storage.open(pathStr, flags, cfg.CFS_DEFAULT_FILE_PERMISSION, uid(), gid());
+      invalidateStat(pathStr);
+      return newOutputStream(cfile, pathStr);
     } catch (Exception ex) {
       log.error("Failed to append:" + path.toString());
       throw new IOException(ex);
@@ -255,13 +666,20 @@ public class ChubaoFileSystem extends FileSystem {
 
   @Override
   public short getDefaultReplication() {
-    return (short) storage.getReplicaNumber();
+    awaitInitUnchecked();
+    return (short) ids.getReplicaNumber();
   }
 
   @Override
   public FSDataOutputStream create(
       Path path, FsPermission permission, boolean overwrite, int bufferSize,
       short replication, long blockSize, Progressable progress) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_CREATE, () -> innerCreate(path, permission, overwrite, bufferSize, replication, blockSize, progress));
+  }
+
+  private FSDataOutputStream innerCreate(
+      Path path, FsPermission permission, boolean overwrite, int bufferSize,
+      short replication, long blockSize, Progressable progress) throws IOException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("Create path: " + path.toString() + " permission: "
           + Integer.toHexString((int) permission.toShort()) + " overwrite: " + overwrite + " bufferSize: " + bufferSize
@@ -270,35 +688,49 @@ public class ChubaoFileSystem extends FileSystem {
     statistics.incrementWriteOps(1);
     CFSFile cfile = null;
     try {
-      Path parentPath = path.getParent();
-      boolean res = mkdirs(parentPath, permission);
-      if (!res) {
-        throw new IOException("Failed to mkdirs:" + parentPath.toString());
+      String pathStr = parsePath(path);
+      int flags = FileStorage.O_WRONLY | FileStorage.O_CREAT;
+      if (overwrite) {
+        flags |= FileStorage.O_TRUNC;
+      } else if (storage.stat(pathStr) != null) {
+        // The SDK has no exclusive open, so the check always goes to the storage, a cached negative
+        // entry would let the open write over an existing file. It is still not atomic.
+        throw new FileAlreadyExistsException(pathStr);
       }
 
-      String pathStr = parsePath(path);
-      if (exists(path)) {
-        if (overwrite) {
-          cfile = storage.open(pathStr, FileStorage.O_WRONLY | FileStorage.O_TRUNC, permission.toShort(), uid, gid);
-        } else {
-          CFSStatInfo stat = storage.stat(pathStr);
-          if (stat != null) {
-            throw new FileAlreadyExistsException(pathStr);
-          }
-          cfile = storage.open(pathStr, FileStorage.O_WRONLY | FileStorage.O_CREAT, permission.toShort(), uid, gid);
+      Path parentPath = path.getParent();
+      String parentStr = parentPath == null ? null : parsePath(parentPath);
+      try {
+        cfile = storage.open(pathStr, flags, permission.toShort(), uid(), gid());
+      } catch (CFSFileNotFoundException e) {
+        // The parent does not exist, or was deleted by another client since it was cached,
+        // create it and retry once. The other errors are not about the parent.
+        if (parentStr == null) {
+          throw e;
         }
-      } else {
-        cfile = storage.open(pathStr, FileStorage.O_WRONLY | FileStorage.O_CREAT, permission.toShort(), uid, gid);
+        if (log.isDebugEnabled()) {
+          log.debug("Create the parent of " + pathStr + " after the open failed: " + e.getMessage());
+        }
+        dirCache.invalidateTree(parentStr);
+        if (!mkdirs(parentPath, permission)) {
+          throw new IOException("Failed to mkdirs:" + parentPath.toString());
+        }
+        cfile = storage.open(pathStr, flags, permission.toShort(), uid(), gid());
+      }
+      if (parentStr != null) {
+        dirCache.add(parentStr);
       }
 
+      invalidateStat(pathStr);
       if (progress != null) {
         progress.progress();
       }
 
-      CFSOutputStream output = new CFSOutputStream(cfile);
-      return new FSDataOutputStream(output, statistics);
+      return newOutputStream(cfile, pathStr);
     } catch (CFSFileNotFoundException e) {
       throw new FileNotFoundException(e.getMessage());
+    } catch (FileAlreadyExistsException e) {
+      throw e;
     } catch (Exception ex) {
       log.error(ex.getMessage(), ex);
       throw new IOException(ex);
@@ -318,7 +750,9 @@ public class ChubaoFileSystem extends FileSystem {
     }
 
     try {
-      storage.truncate(parsePath(path), newLength);
+      String pathStr = parsePath(path);
+      storage.truncate(pathStr, newLength);
+      invalidateStat(pathStr);
     } catch (Exception ex) {
       log.error("Failed to truncate:" + path.toString());
       throw new IOException(ex);
@@ -328,6 +762,10 @@ public class ChubaoFileSystem extends FileSystem {
 
   @Override
   public boolean delete(Path path, boolean recursive) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_DELETE, () -> innerDelete(path, recursive));
+  }
+
+  private boolean innerDelete(Path path, boolean recursive) throws IOException {
     if (log.isDebugEnabled()) {
       log.debug("delete:" + path.toString() + " recursive:" + recursive);
     }
@@ -336,16 +774,23 @@ public class ChubaoFileSystem extends FileSystem {
     String str = null;
     try {
       str = parsePath(path);
-      CFSStatInfo info = storage.stat(str);
+      CFSStatInfo info = stat(str, OP_DELETE);
       if (info == null) {
         return false;
         //throw new FileNotFoundException(path.toString());
       }
 
       if (info.getType() == CFSStatInfo.Type.DIR) {
-        storage.rmdir(str, recursive);
+        if (!recursive || parallelDeleter == null || !parallelDeleter.deleteIfLarge(str)) {
+          storage.rmdir(str, recursive);
+        }
+        if (statCache != null) {
+          statCache.invalidateTree(str);
+        }
+        dirCache.invalidateTree(str);
       } else if (info.getType() == CFSStatInfo.Type.REG || info.getType() == CFSStatInfo.Type.LINK) {
         storage.unlink(str);
+        invalidateStat(str);
       } else {
         throw new IOException("Not support the type:" + info.getType());
       }
@@ -358,6 +803,10 @@ public class ChubaoFileSystem extends FileSystem {
 
   @Override
   public boolean rename(Path src, Path dst) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_RENAME, () -> innerRename(src, dst));
+  }
+
+  private boolean innerRename(Path src, Path dst) throws IOException {
     if (log.isDebugEnabled()) {
       log.debug("rename:" + src.toString() + " to:" + dst.toString());
     }
@@ -377,12 +826,12 @@ public class ChubaoFileSystem extends FileSystem {
     try {
       from = parsePath(src);
       to = parsePath(dst);
-      CFSStatInfo srcInfo = storage.stat(from);
+      CFSStatInfo srcInfo = stat(from, OP_RENAME);
       if (srcInfo == null) {
         return false;
       }
       if (srcInfo.getType() == CFSStatInfo.Type.REG) {
-        CFSStatInfo dstInfo = storage.stat(to);
+        CFSStatInfo dstInfo = stat(to, OP_RENAME);
         if (dstInfo != null && dstInfo.getType() == CFSStatInfo.Type.REG) {
           if (src == dst) {
             return true;
@@ -400,6 +849,11 @@ public class ChubaoFileSystem extends FileSystem {
     }
     try {
       storage.rename(from, to);
+      if (statCache != null) {
+        statCache.invalidateTree(from);
+        statCache.invalidateTree(to);
+      }
+      dirCache.invalidateTree(from);
       return true;
     } catch (CFSException ex) {
       log.error("Failed to rename:" + src + " to:" + dst);
@@ -408,19 +862,84 @@ public class ChubaoFileSystem extends FileSystem {
     }
   }
 
+  /**
+   * Renames with a single storage call, without the checks of {@link #rename(Path, Path)}:
+   * the failure is thrown instead of returning false. An existing destination is handled by
+   * the storage as rename(2) does, so the caller must know the layout, as the output
+   * committer does.
+   */
+  public void renameOrThrow(Path src, Path dst) throws IOException {
+    trackDurationOfInvocation(iostats, StoreStatisticNames.OP_RENAME, () -> innerRenameOrThrow(src, dst));
+  }
+
+  private void innerRenameOrThrow(Path src, Path dst) throws IOException {
+    statistics.incrementWriteOps(1);
+    String from = parsePath(src);
+    String to = parsePath(dst);
+    try {
+      storage.rename(from, to);
+    } catch (CFSFileNotFoundException e) {
+      throw new FileNotFoundException(e.getMessage());
+    } catch (CFSException e) {
+      throw new IOException("Failed to rename " + from + " to " + to, e);
+    } finally {
+      if (statCache != null) {
+        statCache.invalidateTree(from);
+        statCache.invalidateTree(to);
+      }
+      dirCache.invalidateTree(from);
+    }
+  }
+
   @Override
   public void setWorkingDirectory(Path dir) {
+    awaitInitUnchecked();
     this.workingDir = fixRelativePart(dir);
   }
 
   @Override
   public Path getWorkingDirectory() {
+    awaitInitUnchecked();
     return workingDir;
   }
 
+  /**
+   * Returns the capacity and usage of the volume, the same for every path.
+   * The stat is refreshed from the master in the background, see cfs.volume.stat.refresh.ms.
+   */
   @Override
-  public FsStatus getStatus() throws IOException {
-    throw new IOException("Not implement getStatus.");
+  public FsStatus getStatus(Path p) throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_GET_STATUS, () -> innerGetStatus(p));
+  }
+
+  private FsStatus innerGetStatus(Path p) throws IOException {
+    awaitInit();
+    statistics.incrementReadOps(1);
+    VolumeStat stat = volumeStat.get();
+    return new FsStatus(stat.getTotalSize(), stat.getUsedSize(), stat.getRemainingSize());
+  }
+
+  /**
+   * The usage of the root is answered from the accounting of the volume, when the master reports
+   * the inode count. The usage of the other paths is summed up by walking the tree. The capacity of
+   * the volume is not a quota anybody set, so no quota is reported, getStatus() reports the capacity.
+   */
+  @Override
+  public QuotaUsage getQuotaUsage(Path f) throws IOException {
+    if (!parsePath(f).equals("/")) {
+      return super.getQuotaUsage(f);
+    }
+    statistics.incrementReadOps(1);
+    VolumeStat stat = volumeStat.get();
+    if (stat.getInodeCount() < 0) {
+      return super.getQuotaUsage(f);
+    }
+    return new QuotaUsage.Builder()
+        .fileAndDirectoryCount(stat.getInodeCount())
+        .quota(-1)
+        .spaceConsumed(stat.getUsedSize())
+        .spaceQuota(-1)
+        .build();
   }
 
   @Override
@@ -428,6 +947,13 @@ public class ChubaoFileSystem extends FileSystem {
       Path path, FsPermission permission, EnumSet<CreateFlag> flags,
       int bufferSize, short replication, long blockSize, Progressable progress)
       throws IOException {
+    return trackDuration(iostats, StoreStatisticNames.OP_CREATE_NON_RECURSIVE, () -> innerCreateNonRecursive(path, permission, flags, bufferSize, replication, blockSize, progress));
+  }
+
+  private FSDataOutputStream innerCreateNonRecursive(
+      Path path, FsPermission permission, EnumSet<CreateFlag> flags,
+      int bufferSize, short replication, long blockSize, Progressable progress)
+      throws IOException {
     if (!flags.contains(CreateFlag.CREATE)) {
       throw new IOException("Not support the flags:" + flags.toString());
     }
@@ -435,6 +961,7 @@ public class ChubaoFileSystem extends FileSystem {
     String pathStr = parsePath(path);
     CFSStatInfo info = null;
     try {
+      // The flags depend on whether the file exists, a stale cached entry would pick the wrong ones.
       info = storage.stat(pathStr);
     } catch (CFSException e) {
       throw new IOException(e);
@@ -458,13 +985,13 @@ public class ChubaoFileSystem extends FileSystem {
     statistics.incrementWriteOps(1);
     CFSFile cfile = null;
     try {
-      cfile = storage.open(pathStr, fls, cfg.CFS_DEFAULT_FILE_PERMISSION, uid, gid);
+      cfile = storage.open(pathStr, fls, cfg.CFS_DEFAULT_FILE_PERMISSION, uid(), gid());
     } catch (CFSException ex) {
       log.error("Failed to create:" + path.toString());
       throw new IOException(ex);
     }
-    CFSOutputStream output = new CFSOutputStream(cfile);
-    return new FSDataOutputStream(output, statistics);
+    invalidateStat(pathStr);
+    return newOutputStream(cfile, pathStr);
   }
 
   @Override
@@ -473,7 +1000,9 @@ public class ChubaoFileSystem extends FileSystem {
       log.debug("setPermission:" + path.toString() + " permission:" + permission);
     }
     try {
-      storage.chmod(parsePath(path), permission.toShort());
+      String pathStr = parsePath(path);
+      storage.chmod(pathStr, permission.toShort());
+      invalidateStat(pathStr);
     } catch (CFSException ex) {
       log.error(ex.getMessage(), ex);
       throw new IOException(ex);
@@ -486,7 +1015,9 @@ public class ChubaoFileSystem extends FileSystem {
       log.debug("setOwner:" + path.toString() + " username:" + username + " groupname:" + groupname);
     }
     try {
-      storage.chown(parsePath(path), username, groupname);
+      String pathStr = parsePath(path);
+      storage.chown(pathStr, username, groupname);
+      invalidateStat(pathStr);
     } catch (CFSException ex) {
       log.error(ex.getMessage(), ex);
       throw new IOException(ex);
@@ -514,16 +1045,66 @@ public class ChubaoFileSystem extends FileSystem {
       log.debug("setTimes:" + path.toString() + " mtime:" + mtime + " atime:" + atime);
     }
     try {
-      storage.setTimes(parsePath(path), mtime, atime);
+      String pathStr = parsePath(path);
+      storage.setTimes(pathStr, mtime, atime);
+      invalidateStat(pathStr);
     } catch (CFSException ex) {
       log.error(ex.getMessage(), ex);
       throw new IOException(ex);
     }
   }
 
+  /**
+   * Returns the COMPOSITE-CRC32C checksum of the first length bytes of the file, comparable with
+   * the checksum of HDFS in COMPOSITE_CRC mode, or null if cfs.checksum.enable is false.
+   */
   @Override
   public FileChecksum getFileChecksum(Path file, long length) throws IOException {
-    throw new IOException("Unimplement getFileCheckSum:  " + file.toString() + ".");
+    return trackDuration(iostats, StoreStatisticNames.OP_GET_FILE_CHECKSUM, () -> innerGetFileChecksum(file, length));
+  }
+
+  private FileChecksum innerGetFileChecksum(Path file, long length) throws IOException {
+    if (log.isDebugEnabled()) {
+      log.debug("getFileChecksum:" + file.toString() + " length:" + length);
+    }
+    if (length < 0) {
+      throw new IllegalArgumentException("Invalid length: " + length);
+    }
+    if (checksums == null) {
+      return null;
+    }
+    String pathStr = parsePath(file);
+    try {
+      CFSStatInfo info = storage.stat(pathStr);
+      if (info == null) {
+        throw new FileNotFoundException(file.toString());
+      }
+      if (info.getType() == CFSStatInfo.Type.DIR) {
+        throw new FileNotFoundException("Path is a directory: " + file.toString());
+      }
+      long len = Math.min(length, info.getSize());
+      FileChecksum checksum = checksums.getCached(pathStr, info.getMtime(), len);
+      if (checksum != null) {
+        return checksum;
+      }
+
+      statistics.incrementReadOps(1);
+      CFSFile cfile = storage.open(pathStr, FileStorage.O_RDONLY, 0, uid(), gid());
+      try {
+        return checksums.compute(pathStr, info.getMtime(), len, ids.getBlockSize(), (position, buf, off, size) -> {
+          try {
+            long res = cfile.read(position, buf, off, size);
+            return res <= 0 ? -1 : (int) res;
+          } catch (CFSException ex) {
+            throw new IOException(ex);
+          }
+        });
+      } finally {
+        cfile.close();
+      }
+    } catch (CFSException ex) {
+      throw new IOException(ex);
+    }
   }
 
   @Override
@@ -576,83 +1157,64 @@ public class ChubaoFileSystem extends FileSystem {
     throw new IOException("Not implement removeXAttrs:  " + path.toString() + ".");
   }
 
-  private String parsePath(Path p) {
-    /*
-    if (log.isDebugEnabled()) {
-      log.debug("path:" + p.toString());
-    }
-     */
-    Path path = makeQualified(p);
-    URI pathURI = path.toUri();
-    if (pathURI == null) {
-      throw new IllegalArgumentException("Couldn't parse the path, " + path);
+  private FSDataOutputStream newOutputStream(CFSFile cfile, final String pathStr) {
+    CFSOutputStream output = new CFSOutputStream(cfile);
+    CFSDataOutputStream out = new CFSDataOutputStream(output, cfg, ioExecutor, iostats);
+    if (statCache == null) {
+      return new FSDataOutputStream(out, statistics);
     }
-
-    String res = null;
-    String scheme = pathURI.getScheme();
-    if (scheme != null) {
-      if (scheme.equals(CFS_SCHEME_NAME) == false) {
-        throw new IllegalArgumentException("Not support the scheme, from the path, " + path);
+    return new FSDataOutputStream(out, statistics) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          invalidateStat(pathStr);
+        }
       }
+    };
+  }
 
-      res = pathURI.getPath().trim();
-      if (res == null || res.isEmpty()) {
-        throw new IllegalArgumentException(path + " is invalid.");
-      }
-    } else {
-      res = pathURI.toString().trim();
-      if (res == null || res.isEmpty()) {
-        log.warn("Reset the path with working-dir: " + workingDir);
-        res = workingDir.toString();
-      } else if (path.isAbsolute() == false) {
-        res = new Path(workingDir.toString() + path.toString()).toString();
-      } else {
-        res = path.toString();
-      }
+  /**
+   * Stats the path through the stat cache, unless the cache is disabled or bypassed by the op.
+   *
+   * @return the stat info, or null if the path does not exist.
+   */
+  private CFSStatInfo stat(String pathStr, String op) throws CFSException {
+    if (statCache == null || statCacheBypassOps.contains(op)) {
+      return storage.stat(pathStr);
     }
-
-    if (res.startsWith("/") == false) {
-      throw new IllegalArgumentException(path + " is invalid.");
+    StatCache.Entry entry = statCache.get(pathStr);
+    if (entry != null) {
+      return entry.getInfo();
     }
-
-    return res;
+    long generation = statCache.generation(pathStr);
+    CFSStatInfo info = storage.stat(pathStr);
+    statCache.put(pathStr, info, generation);
+    return info;
   }
 
-  private String validPath(Path path) {
-    log.info("path:" + path.toString());
-    URI pathURI = path.toUri();
-    log.info("URI.getPath:" + pathURI.getPath());
-    if (pathURI == null) {
-      throw new IllegalArgumentException("Couldn't parse the path, " + path);
+  private void invalidateStat(String pathStr) {
+    if (statCache != null) {
+      statCache.invalidate(pathStr);
     }
+  }
 
-    String res = null;
-    String scheme = pathURI.getScheme();
-    if (scheme != null) {
-      if (scheme.equals(CFS_SCHEME_NAME) == false) {
-        throw new IllegalArgumentException("Not support the scheme, from the path, " + path);
-      }
-
-      res = pathURI.getPath().trim();
-      if (res == null || res.isEmpty()) {
-        throw new IllegalArgumentException(path + " is invalid.");
-      }
-    } else {
-      res = pathURI.toString().trim();
-      if (res == null || res.isEmpty()) {
-        log.warn("Reset the path with working-dir: " + workingDir);
-        res = workingDir.toString();
-      } else if (path.isAbsolute() == false) {
-        res = new Path(workingDir.toString() + path.toString()).toString();
-      } else {
-        res = path.toString();
-      }
+  /**
+   * Resolves the path to the absolute path in the volume. Only the paths the resolver cannot
+   * decide on are qualified, which also rejects the paths of another file system.
+   */
+  String parsePath(Path p) throws IOException {
+    awaitInit();
+    String res = resolver.resolve(p, workingDir);
+    if (res != null) {
+      return res;
     }
-
-    if (res.startsWith("/") == false) {
+    Path path = makeQualified(p);
+    res = resolver.resolve(path, workingDir);
+    if (res == null) {
       throw new IllegalArgumentException(path + " is invalid.");
     }
-
     return res;
   }
 }
@@ -0,0 +1,90 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.client.stream.PositionReader;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestFileTailCache {
+  private byte[] data;
+  private AtomicInteger calls = new AtomicInteger(0);
+
+  private PositionReader source = (position, buf, off, len) -> {
+    calls.incrementAndGet();
+    if (position >= data.length) {
+      return -1;
+    }
+    int size = (int) Math.min(len, data.length - position);
+    System.arraycopy(data, (int) position, buf, off, size);
+    return size;
+  };
+
+  @Before
+  public void setUp() {
+    data = new byte[10000];
+    new Random(37).nextBytes(data);
+  }
+
+  @Test
+  public void testFooterReads() throws Exception {
+    FileTailCache cache = new FileTailCache(1024, 4096);
+    PositionReader reader = cache.file("/a", 100, data.length).reader(source, null);
+    byte[] buf = new byte[1024];
+    Assert.assertEquals(8, reader.read(data.length - 8, buf, 0, 8));
+    Assert.assertArrayEquals(Arrays.copyOfRange(data, data.length - 8, data.length), Arrays.copyOf(buf, 8));
+    Assert.assertEquals(1024, cache.getUsed());
+
+    // Another stream on the same version reads the footer from the cache.
+    calls.set(0);
+    reader = cache.file("/a", 100, data.length).reader(source, null);
+    Assert.assertEquals(500, reader.read(data.length - 500, buf, 0, 1000));
+    Assert.assertArrayEquals(Arrays.copyOfRange(data, data.length - 500, data.length), Arrays.copyOf(buf, 500));
+    Assert.assertEquals(0, calls.get());
+
+    // Reads before the tail and other versions go to the source.
+    Assert.assertEquals(100, reader.read(0, buf, 0, 100));
+    Assert.assertEquals(1, calls.get());
+    reader = cache.file("/a", 101, data.length).reader(source, null);
+    reader.read(data.length - 8, buf, 0, 8);
+    Assert.assertTrue(calls.get() > 1);
+    Assert.assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    FileTailCache cache = new FileTailCache(1024, 2048);
+    byte[] buf = new byte[8];
+    for (int i = 0; i < 3; i++) {
+      cache.file("/f" + i, 100, data.length).reader(source, null).read(data.length - 8, buf, 0, 8);
+    }
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(2048, cache.getUsed());
+
+    calls.set(0);
+    cache.file("/f2", 100, data.length).reader(source, null).read(data.length - 8, buf, 0, 8);
+    Assert.assertEquals(0, calls.get());
+    cache.file("/f0", 100, data.length).reader(source, null).read(data.length - 8, buf, 0, 8);
+    Assert.assertTrue(calls.get() > 0);
+
+    // A file smaller than the tail is cached whole.
+    cache.file("/small", 100, 10).reader(source, null).read(2, buf, 0, 8);
+    Assert.assertArrayEquals(Arrays.copyOfRange(data, 2, 10), buf);
+  }
+}
@@ -0,0 +1,289 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.client.stream.CFSDataInputStream;
+import io.chubao.fs.client.stream.PositionReader;
+import io.chubao.fs.sdk.CFSFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestLocalBlockCache {
+  private static final int BLOCK_SIZE = 4096;
+
+  private byte[] data;
+  private AtomicInteger calls = new AtomicInteger(0);
+  private AtomicInteger blockLoads = new AtomicInteger(0);
+  private volatile long loadDelayMs = 0;
+  private File dir;
+
+  private PositionReader source = (position, buf, off, len) -> {
+    calls.incrementAndGet();
+    if (len == BLOCK_SIZE && position % BLOCK_SIZE == 0) {
+      blockLoads.incrementAndGet();
+      try {
+        Thread.sleep(loadDelayMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (position >= data.length) {
+      return -1;
+    }
+    int size = (int) Math.min(len, data.length - position);
+    System.arraycopy(data, (int) position, buf, off, size);
+    return size;
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    data = new byte[BLOCK_SIZE * 3 + 100];
+    new Random(31).nextBytes(data);
+    dir = Files.createTempDirectory("cfs-block-cache").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testReadThroughCache() throws Exception {
+    LocalBlockCache cache = LocalBlockCache.get(dir.getPath(), 1024 * 1024, BLOCK_SIZE, 2);
+    try {
+      PositionReader reader = cache.file("vol/a", 100, data.length).reader(source, null);
+      readAndCheck(reader, 7);
+      awaitLoads(cache);
+      Assert.assertEquals(4, cache.getBlockCount());
+      Assert.assertEquals(data.length, cache.getUsed());
+
+      calls.set(0);
+      readAndCheck(reader, 11);
+      // Only the read at the end of the file, which may have grown since it was opened.
+      Assert.assertEquals(1, calls.get());
+
+      PositionReader changed = cache.file("vol/a", 101, data.length).reader(source, null);
+      readAndCheck(changed, 13);
+      Assert.assertTrue(calls.get() > 1);
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentMissesLoadOnce() throws Exception {
+    LocalBlockCache cache = LocalBlockCache.get(dir.getPath(), 1024 * 1024, BLOCK_SIZE, 2);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      loadDelayMs = 200;
+      PositionReader reader = cache.file("vol/c", 100, data.length).reader(source, null);
+      List<Future<byte[]>> results = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        results.add(pool.submit(() -> {
+          byte[] buf = new byte[100];
+          Assert.assertEquals(100, reader.read(BLOCK_SIZE + 10, buf, 0, buf.length));
+          return buf;
+        }));
+      }
+      for (Future<byte[]> result : results) {
+        byte[] buf = result.get();
+        for (int i = 0; i < buf.length; i++) {
+          Assert.assertEquals(data[BLOCK_SIZE + 10 + i], buf[i]);
+        }
+      }
+      awaitLoads(cache);
+      Assert.assertEquals(1, blockLoads.get());
+      Assert.assertEquals(1, cache.getBlockCount());
+    } finally {
+      pool.shutdownNow();
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testEvictAndRebuild() throws Exception {
+    LocalBlockCache cache = LocalBlockCache.get(dir.getPath(), BLOCK_SIZE * 2, BLOCK_SIZE, 1);
+    PositionReader reader = cache.file("vol/b", 100, data.length).reader(source, null);
+    readAndCheck(reader, 17);
+    awaitLoads(cache);
+    Assert.assertTrue(cache.getUsed() <= BLOCK_SIZE * 2);
+    Assert.assertTrue(dir.list().length <= 3);
+    int blocks = cache.getBlockCount();
+    long used = cache.getUsed();
+    cache.close();
+    Assert.assertTrue(new File(dir, "leftover.1.tmp").createNewFile());
+
+    cache = LocalBlockCache.get(dir.getPath(), BLOCK_SIZE * 2, BLOCK_SIZE, 1);
+    try {
+      Assert.assertEquals(blocks, cache.getBlockCount());
+      Assert.assertEquals(used, cache.getUsed());
+      Assert.assertFalse(new File(dir, "leftover.1.tmp").exists());
+
+      // The last blocks loaded are the ones kept.
+      reader = cache.file("vol/b", 100, data.length).reader(source, null);
+      calls.set(0);
+      byte[] buf = new byte[100];
+      Assert.assertEquals(100, reader.read(BLOCK_SIZE * 3, buf, 0, buf.length));
+      Assert.assertEquals(0, calls.get());
+    } finally {
+      cache.close();
+    }
+
+    cache = LocalBlockCache.get(dir.getPath(), BLOCK_SIZE * 2, BLOCK_SIZE * 2, 1);
+    try {
+      Assert.assertEquals(0, cache.getBlockCount());
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testUnbufferDropsPendingLoad() throws Exception {
+    LocalBlockCache cache = LocalBlockCache.get(dir.getPath(), 1024 * 1024, BLOCK_SIZE, 1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch unblock = new CountDownLatch(1);
+    AtomicInteger opens = new AtomicInteger(0);
+    AtomicInteger closes = new AtomicInteger(0);
+    try {
+      // Keep the only loader busy, so the load of the stream stays queued.
+      PositionReader blocking = (position, buf, off, len) -> {
+        if (len == BLOCK_SIZE) {
+          try {
+            unblock.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return source.read(position, buf, off, len);
+      };
+      byte[] buf = new byte[100];
+      cache.file("vol/blocker", 100, data.length).reader(blocking, null).read(0, buf, 0, buf.length);
+
+      CFSDataInputStream in = new CFSDataInputStream(new DataFile(closes), () -> {
+        opens.incrementAndGet();
+        return new DataFile(closes);
+      }, Collections.singletonList(cache.file("vol/d", 100, data.length)), new CFSConfig(), 4096, executor,
+          null, null);
+      Assert.assertEquals(buf.length, in.read(10, buf, 0, buf.length));
+      Assert.assertTrue(cache.isLoading());
+      in.unbuffer();
+      Assert.assertEquals(1, closes.get());
+
+      unblock.countDown();
+      awaitLoads(cache);
+      // The queued load neither opened the file again nor cached a block.
+      Assert.assertEquals(0, opens.get());
+      Assert.assertEquals(1, closes.get());
+      Assert.assertEquals(1, cache.getBlockCount());
+      in.close();
+      Assert.assertEquals(1, closes.get());
+    } finally {
+      unblock.countDown();
+      executor.shutdownNow();
+      cache.close();
+    }
+  }
+
+  private class DataFile implements CFSFile {
+    private final AtomicInteger closes;
+
+    DataFile(AtomicInteger closes) {
+      this.closes = closes;
+    }
+
+    @Override
+    public void close() {
+      closes.incrementAndGet();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long read(byte[] buf, int off, int len) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long read(long position, byte[] buf, int off, int len) {
+      if (position >= data.length) {
+        return 0;
+      }
+      int size = (int) Math.min(len, data.length - position);
+      System.arraycopy(data, (int) position, buf, off, size);
+      return size;
+    }
+
+    @Override
+    public void seek(long pos) {
+    }
+
+    @Override
+    public long getPosition() {
+      return 0;
+    }
+
+    @Override
+    public long getFileSize() {
+      return data.length;
+    }
+  }
+
+  private void readAndCheck(PositionReader reader, long seed) throws Exception {
+    Random random = new Random(seed);
+    byte[] buf = new byte[data.length];
+    int pos = 0;
+    while (pos < data.length) {
+      int size = reader.read(pos, buf, pos, Math.min(1 + random.nextInt(3000), data.length - pos));
+      Assert.assertTrue(size > 0);
+      pos += size;
+    }
+    Assert.assertArrayEquals(data, buf);
+    Assert.assertEquals(-1, reader.read(data.length, buf, 0, 1));
+  }
+
+  private static void awaitLoads(LocalBlockCache cache) throws InterruptedException {
+    for (int i = 0; i < 1000 && cache.isLoading(); i++) {
+      Thread.sleep(10);
+    }
+    Assert.assertFalse(cache.isLoading());
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.sdk.CFSStatInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStatCache {
+  private static final long TTL_MS = 60 * 1000;
+
+  private StatCache cache = new StatCache(1000, TTL_MS, true);
+
+  @Test
+  public void testInvalidateFileAndParent() {
+    // create, setTimes, truncate and the delete of a file change the file and the mtime of its parent.
+    put("/a", "/a/b", "/a/b/f", "/a/b/g");
+    cache.invalidate("/a/b/f");
+    assertCached(false, "/a/b/f", "/a/b");
+    assertCached(true, "/a", "/a/b/g");
+
+    cache.invalidate("/f");
+    put("/", "/f");
+    cache.invalidate("/f");
+    assertCached(false, "/", "/f");
+  }
+
+  @Test
+  public void testInvalidateWithAncestors() {
+    // mkdirs creates the missing ancestors too.
+    put("/", "/a", "/a/b", "/a/b/c", "/a/x");
+    cache.invalidateWithAncestors("/a/b/c");
+    assertCached(false, "/", "/a", "/a/b", "/a/b/c");
+    assertCached(true, "/a/x");
+  }
+
+  @Test
+  public void testInvalidateTree() {
+    // The delete of a dir, and rename which invalidates the trees of both paths.
+    put("/", "/a", "/a/b", "/a/b/c", "/a/b/c/d", "/a/bc", "/x");
+    cache.invalidateTree("/a/b");
+    assertCached(false, "/", "/a", "/a/b", "/a/b/c", "/a/b/c/d");
+    assertCached(true, "/a/bc", "/x");
+  }
+
+  @Test
+  public void testNegativeEntries() {
+    long generation = cache.generation("/a/f");
+    cache.put("/a/f", null, generation);
+    StatCache.Entry entry = cache.get("/a/f");
+    Assert.assertNotNull(entry);
+    Assert.assertNull(entry.getInfo());
+    // Created by this client.
+    cache.invalidate("/a/f");
+    Assert.assertNull(cache.get("/a/f"));
+
+    StatCache positiveOnly = new StatCache(1000, TTL_MS, false);
+    positiveOnly.put("/a/f", null, positiveOnly.generation("/a/f"));
+    Assert.assertNull(positiveOnly.get("/a/f"));
+    positiveOnly.put("/a/f", info("f"), positiveOnly.generation("/a/f"));
+    Assert.assertNotNull(positiveOnly.get("/a/f"));
+  }
+
+  @Test
+  public void testStaleStatNotCached() {
+    // A stat taken before a create of this client must not put back the missing entry.
+    long generation = cache.generation("/a/f");
+    cache.invalidate("/a/f");
+    cache.put("/a/f", null, generation);
+    Assert.assertNull(cache.get("/a/f"));
+
+    // The parent of an invalidated path.
+    generation = cache.generation("/a");
+    cache.invalidate("/a/g");
+    cache.put("/a", info("a"), generation);
+    Assert.assertNull(cache.get("/a"));
+
+    // Anything under an invalidated tree.
+    generation = cache.generation("/t/x/y");
+    cache.invalidateTree("/t");
+    cache.put("/t/x/y", null, generation);
+    Assert.assertNull(cache.get("/t/x/y"));
+
+    generation = cache.generation("/t/x/y");
+    cache.put("/t/x/y", null, generation);
+    Assert.assertNotNull(cache.get("/t/x/y"));
+  }
+
+  @Test
+  public void testExpireAndEvict() throws Exception {
+    StatCache expiring = new StatCache(1000, 10, true);
+    expiring.put("/a", info("a"), expiring.generation("/a"));
+    Thread.sleep(50);
+    Assert.assertNull(expiring.get("/a"));
+
+    StatCache small = new StatCache(2, TTL_MS, true);
+    small.put("/a", info("a"), small.generation("/a"));
+    small.put("/b", info("b"), small.generation("/b"));
+    Assert.assertNotNull(small.get("/a"));
+    small.put("/c", info("c"), small.generation("/c"));
+    Assert.assertNotNull(small.get("/a"));
+    Assert.assertNull(small.get("/b"));
+    Assert.assertEquals(2, small.getHits());
+    Assert.assertEquals(1, small.getMisses());
+  }
+
+  private void put(String... paths) {
+    for (String path : paths) {
+      cache.put(path, info(path), cache.generation(path));
+    }
+  }
+
+  private void assertCached(boolean cached, String... paths) {
+    for (String path : paths) {
+      Assert.assertEquals(path, cached, cache.get(path) != null);
+    }
+  }
+
+  private static CFSStatInfo info(String name) {
+    return new CFSStatInfo(0100644, 0, 0, 0, 0, 0, 0, name);
+  }
+}
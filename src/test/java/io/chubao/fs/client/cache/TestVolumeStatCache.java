@@ -0,0 +1,62 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.cache;
+
+import io.chubao.fs.client.util.VolumeStat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestVolumeStatCache {
+  private AtomicInteger fetches = new AtomicInteger(0);
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCachedWithinInterval() throws Exception {
+    VolumeStatCache cache = new VolumeStatCache(
+        () -> new VolumeStat(100, fetches.incrementAndGet(), -1), executor, 60 * 1000);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(1, cache.get().getUsedSize());
+    }
+    Assert.assertEquals(1, fetches.get());
+  }
+
+  @Test
+  public void testRefreshInBackground() throws Exception {
+    VolumeStatCache cache = new VolumeStatCache(
+        () -> new VolumeStat(100, fetches.incrementAndGet(), -1), executor, 0);
+    Assert.assertEquals(1, cache.get().getUsedSize());
+    Assert.assertEquals(1, cache.get().getUsedSize());
+    long deadline = System.currentTimeMillis() + 10000;
+    while (cache.get().getUsedSize() == 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(cache.get().getUsedSize() > 1);
+  }
+}
@@ -0,0 +1,141 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.commit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Runs the committer on the local file system, TestChubaoFileSystemContract runs it on ChubaoFileSystem.
+ */
+public class TestCFSOutputCommitter {
+  private final JobID jobId = new JobID("test", 1);
+  private Configuration conf;
+  private File dir;
+  private Path output;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new Configuration();
+    dir = Files.createTempDirectory("cfs-committer").toFile();
+    output = new Path(dir.toURI().toString(), "out");
+    fs = output.getFileSystem(conf);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.fullyDelete(dir);
+  }
+
+  private TaskAttemptContext task(int id, int attempt) {
+    return new TaskAttemptContextImpl(conf, new TaskAttemptID(jobId.getJtIdentifier(), jobId.getId(),
+        TaskType.REDUCE, id, attempt));
+  }
+
+  private void write(CFSOutputCommitter committer, String name, String content) throws IOException {
+    try (FSDataOutputStream out = fs.create(new Path(committer.getWorkPath(), name))) {
+      out.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * A file at the top, one in the partition every task writes, and one in a partition of its own.
+   */
+  private void writeTaskOutput(CFSOutputCommitter committer, int task, String content) throws IOException {
+    write(committer, "part-" + task, content);
+    write(committer, "dt=1/part-" + task, content);
+    write(committer, "dt=" + (task + 2) + "/part-" + task, content);
+  }
+
+  private String read(String name) throws IOException {
+    return new String(Files.readAllBytes(new File(new File(dir, "out"), name).toPath()), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testCommit() throws Exception {
+    JobContext job = new JobContextImpl(conf, jobId);
+    new CFSOutputCommitter(output, job).setupJob(job);
+
+    for (int i = 0; i < 3; i++) {
+      TaskAttemptContext context = task(i, 0);
+      CFSOutputCommitter committer = new CFSOutputCommitter(output, context);
+      committer.setupTask(context);
+      writeTaskOutput(committer, i, "task" + i);
+      Assert.assertTrue(committer.needsTaskCommit(context));
+      committer.commitTask(context);
+    }
+
+    // The retried attempt replaces the committed one.
+    TaskAttemptContext retry = task(2, 1);
+    CFSOutputCommitter committer = new CFSOutputCommitter(output, retry);
+    writeTaskOutput(committer, 2, "retry");
+    committer.commitTask(retry);
+
+    // An aborted attempt leaves nothing.
+    TaskAttemptContext aborted = task(3, 0);
+    committer = new CFSOutputCommitter(output, aborted);
+    write(committer, "part-3", "aborted");
+    committer.abortTask(aborted);
+    Assert.assertFalse(committer.needsTaskCommit(aborted));
+
+    new CFSOutputCommitter(output, job).commitJob(job);
+
+    for (int i = 0; i < 3; i++) {
+      String content = i == 2 ? "retry" : "task" + i;
+      Assert.assertEquals(content, read("part-" + i));
+      Assert.assertEquals(content, read("dt=1/part-" + i));
+      Assert.assertEquals(content, read("dt=" + (i + 2) + "/part-" + i));
+    }
+    Assert.assertFalse(fs.exists(new Path(output, "part-3")));
+    Assert.assertTrue(fs.exists(new Path(output, FileOutputCommitter.SUCCEEDED_FILE_NAME)));
+    Assert.assertFalse(fs.exists(new Path(output, FileOutputCommitter.PENDING_DIR_NAME)));
+  }
+
+  @Test
+  public void testAbortJob() throws Exception {
+    JobContext job = new JobContextImpl(conf, jobId);
+    CFSOutputCommitter jobCommitter = new CFSOutputCommitter(output, job);
+    jobCommitter.setupJob(job);
+    TaskAttemptContext context = task(0, 0);
+    CFSOutputCommitter committer = new CFSOutputCommitter(output, context);
+    write(committer, "part-0", "task0");
+    committer.commitTask(context);
+
+    jobCommitter.abortJob(job, JobStatus.State.FAILED);
+    Assert.assertFalse(fs.exists(new Path(output, FileOutputCommitter.PENDING_DIR_NAME)));
+    Assert.assertFalse(fs.exists(new Path(output, "part-0")));
+  }
+}
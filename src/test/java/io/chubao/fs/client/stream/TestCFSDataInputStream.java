@@ -0,0 +1,134 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.sdk.CFSFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCFSDataInputStream {
+  private final byte[] data = new byte[64 * 1024];
+  private final AtomicInteger opens = new AtomicInteger(0);
+  private final AtomicInteger closes = new AtomicInteger(0);
+  private final CountDownLatch readStarted = new CountDownLatch(1);
+  private final CountDownLatch readReleased = new CountDownLatch(1);
+  private volatile boolean blockReads;
+  private ExecutorService executor;
+
+  private class FakeFile implements CFSFile {
+    @Override
+    public void close() {
+      closes.incrementAndGet();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long read(byte[] buf, int off, int len) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long read(long position, byte[] buf, int off, int len) {
+      if (blockReads) {
+        readStarted.countDown();
+        try {
+          readReleased.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (position >= data.length) {
+        return 0;
+      }
+      int size = (int) Math.min(len, data.length - position);
+      System.arraycopy(data, (int) position, buf, off, size);
+      return size;
+    }
+
+    @Override
+    public void seek(long pos) {
+    }
+
+    @Override
+    public long getPosition() {
+      return 0;
+    }
+
+    @Override
+    public long getFileSize() {
+      return data.length;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    new Random(43).nextBytes(data);
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    readReleased.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 60000)
+  public void testUnbufferDuringPositionedRead() throws Exception {
+    CFSDataInputStream in = new CFSDataInputStream(new FakeFile(), () -> {
+      opens.incrementAndGet();
+      return new FakeFile();
+    }, Collections.emptyList(), new CFSConfig(), 4096, executor, null, null);
+
+    blockReads = true;
+    Future<Integer> pread = executor.submit(() -> in.read(100, new byte[100], 0, 100));
+    readStarted.await();
+    in.unbuffer();
+    // The file is in use, the reader closes it when it is done.
+    Assert.assertEquals(0, closes.get());
+    blockReads = false;
+    readReleased.countDown();
+    Assert.assertEquals(100, pread.get().intValue());
+    Assert.assertEquals(1, closes.get());
+
+    // A read after the unbuffer opens the file again and keeps it open.
+    byte[] buf = new byte[100];
+    Assert.assertEquals(100, in.read(200, buf, 0, buf.length));
+    Assert.assertEquals(1, opens.get());
+    Assert.assertEquals(1, closes.get());
+    for (int i = 0; i < buf.length; i++) {
+      Assert.assertEquals(data[200 + i], buf[i]);
+    }
+    in.close();
+    Assert.assertEquals(2, closes.get());
+  }
+}
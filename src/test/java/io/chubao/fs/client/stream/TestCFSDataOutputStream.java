@@ -0,0 +1,118 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import io.chubao.fs.client.config.CFSConfig;
+import io.chubao.fs.sdk.CFSFile;
+import io.chubao.fs.sdk.stream.CFSOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class TestCFSDataOutputStream {
+  private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+  private final CountDownLatch firstWrite = new CountDownLatch(1);
+  private ExecutorService executor;
+
+  private final CFSFile file = new CFSFile() {
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) {
+      try {
+        firstWrite.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      synchronized (written) {
+        written.write(data, off, len);
+      }
+    }
+
+    @Override
+    public long read(byte[] buf, int off, int len) {
+      return 0;
+    }
+
+    @Override
+    public long read(long position, byte[] buf, int off, int len) {
+      return 0;
+    }
+
+    @Override
+    public void seek(long pos) {
+    }
+
+    @Override
+    public long getPosition() {
+      return 0;
+    }
+
+    @Override
+    public long getFileSize() {
+      return written.size();
+    }
+  };
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    firstWrite.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 60000)
+  public void testExecutorShutdownWithPendingWrites() throws Exception {
+    CFSConfig cfg = new CFSConfig();
+    byte[] data = new byte[cfg.getWriteBufferSize() * (cfg.getWriteMaxInFlight() + 3) + 100];
+    new Random(41).nextBytes(data);
+    CFSDataOutputStream out = new CFSDataOutputStream(new CFSOutputStream(file), cfg, executor, null);
+
+    // The first buffer is stuck in the executor, the pool is shut down behind it.
+    out.write(data, 0, cfg.getWriteBufferSize() + 1);
+    executor.shutdown();
+    new Thread(() -> {
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      firstWrite.countDown();
+    }).start();
+
+    out.write(data, cfg.getWriteBufferSize() + 1, data.length - cfg.getWriteBufferSize() - 1);
+    out.hsync();
+    out.close();
+    Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertArrayEquals(data, written.toByteArray());
+  }
+}
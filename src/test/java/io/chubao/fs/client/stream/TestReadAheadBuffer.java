@@ -0,0 +1,140 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.stream;
+
+import org.apache.hadoop.fs.statistics.impl.IOStatisticsStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestReadAheadBuffer {
+  private byte[] data;
+  private AtomicInteger calls = new AtomicInteger(0);
+  private ExecutorService executor;
+
+  private PositionReader reader = (position, buf, off, len) -> {
+    calls.incrementAndGet();
+    if (position >= data.length) {
+      return -1;
+    }
+    int size = (int) Math.min(len, data.length - position);
+    System.arraycopy(data, (int) position, buf, off, size);
+    return size;
+  };
+
+  @Before
+  public void setUp() {
+    data = new byte[1024 * 1024 + 17];
+    new Random(7).nextBytes(data);
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSequentialRead() throws Exception {
+    ReadAheadBuffer ra = new ReadAheadBuffer(reader, executor, 4096, 256 * 1024);
+    byte[] buf = new byte[100];
+    long pos = 0;
+    while (true) {
+      int size = ra.read(pos, buf, 0, buf.length);
+      if (size < 0) {
+        break;
+      }
+      for (int i = 0; i < size; i++) {
+        Assert.assertEquals(data[(int) pos + i], buf[i]);
+      }
+      pos += size;
+    }
+    Assert.assertEquals(data.length, pos);
+    Assert.assertTrue("calls:" + calls.get(), calls.get() < data.length / 4096);
+  }
+
+  @Test
+  public void testRandomRead() throws Exception {
+    ReadAheadBuffer ra = new ReadAheadBuffer(reader, executor, 4096, 256 * 1024);
+    Random random = new Random(11);
+    byte[] buf = new byte[300];
+    for (int i = 0; i < 1000; i++) {
+      long pos = random.nextInt(data.length);
+      int size = ra.read(pos, buf, 0, buf.length);
+      Assert.assertTrue(size > 0);
+      for (int j = 0; j < size; j++) {
+        Assert.assertEquals(data[(int) pos + j], buf[j]);
+      }
+    }
+    Assert.assertEquals(-1, ra.read(data.length, buf, 0, buf.length));
+  }
+
+  @Test
+  public void testLargeRead() throws Exception {
+    ReadAheadBuffer ra = new ReadAheadBuffer(reader, null, 4096, 64 * 1024);
+    byte[] buf = new byte[data.length];
+    int size = ra.read(0, buf, 0, buf.length);
+    Assert.assertEquals(data.length, size);
+    Assert.assertArrayEquals(data, buf);
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    IOStatisticsStore stats = StreamStatistics.newInputStreamStatistics();
+    ReadAheadBuffer ra = new ReadAheadBuffer(reader, executor, 4096, 256 * 1024, stats);
+    byte[] buf = new byte[100];
+    long pos = 0;
+    int reads = 0;
+    while (pos < 64 * 1024) {
+      pos += ra.read(pos, buf, 0, buf.length);
+      reads++;
+    }
+    long hits = stats.counters().get(StreamStatistics.STREAM_READ_READAHEAD_HITS);
+    long misses = stats.counters().get(StreamStatistics.STREAM_READ_READAHEAD_MISSES);
+    Assert.assertTrue(hits + misses >= reads);
+    Assert.assertTrue("hits:" + hits + " misses:" + misses, hits > misses);
+  }
+
+  @Test
+  public void testReleaseWaitsForPrefetch() throws Exception {
+    AtomicInteger active = new AtomicInteger(0);
+    PositionReader slow = (position, buf, off, len) -> {
+      active.incrementAndGet();
+      try {
+        Thread.sleep(50);
+        return reader.read(position, buf, off, len);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      } finally {
+        active.decrementAndGet();
+      }
+    };
+    for (int round = 0; round < 10; round++) {
+      ReadAheadBuffer ra = new ReadAheadBuffer(slow, executor, 4096, 256 * 1024);
+      byte[] buf = new byte[100];
+      ra.read(0, buf, 0, buf.length);
+      ra.read(100, buf, 0, buf.length);
+      Thread.sleep(round * 5);
+      ra.release();
+      Assert.assertEquals(0, active.get());
+    }
+  }
+}
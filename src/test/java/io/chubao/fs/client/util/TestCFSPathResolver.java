@@ -0,0 +1,62 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+
+public class TestCFSPathResolver {
+  private final CFSPathResolver resolver = new CFSPathResolver(URI.create("cfs://vol"));
+  private final Path workingDir = new Path("cfs://vol/user/test");
+
+  @Test
+  public void testResolve() {
+    Assert.assertEquals("/a/b", resolver.resolve(new Path("/a/b"), workingDir));
+    Assert.assertEquals("/a/b", resolver.resolve(new Path("cfs://vol/a/b"), workingDir));
+    Assert.assertEquals("/a/b", resolver.resolve(new Path("cfs:/a/b"), workingDir));
+    Assert.assertEquals("/a/b", resolver.resolve(new Path("CFS://VOL/a/b"), workingDir));
+    Assert.assertEquals("/user/test/a/b", resolver.resolve(new Path("a/b"), workingDir));
+    Assert.assertEquals("/a b/c:d", resolver.resolve(new Path("cfs://vol/a b/c:d"), workingDir));
+    Assert.assertEquals("/", resolver.resolve(new Path("/"), workingDir));
+
+    // Left to the file system.
+    Assert.assertNull(resolver.resolve(new Path("../a"), workingDir));
+    Assert.assertNull(resolver.resolve(new Path("cfs://other/a"), workingDir));
+    Assert.assertNull(resolver.resolve(new Path("hdfs://vol/a"), workingDir));
+    Assert.assertNull(resolver.resolve(new Path("cfs://vol"), workingDir));
+  }
+
+  @Test
+  public void testQualify() {
+    Path qualified = new Path("cfs://vol/a/b");
+    Assert.assertSame(qualified, resolver.qualify(qualified, "/a/b"));
+    Assert.assertEquals(qualified, resolver.qualify(new Path("/a/b"), "/a/b"));
+    Assert.assertEquals(new Path("cfs://vol/user/test/a"), resolver.qualify(new Path("a"), "/user/test/a"));
+  }
+
+  @Test
+  public void testChild() {
+    Path parent = new Path("cfs://vol/a");
+    Assert.assertEquals(new Path("cfs://vol/a/b"), resolver.child(parent, "b"));
+    Assert.assertEquals(new Path("cfs://vol/b"), resolver.child(new Path("cfs://vol/"), "b"));
+    for (String name : new String[]{"part-00000.gz", "c:d", "with space", "per%cent", "a#b", "x?y", "\u6587\u4ef6"}) {
+      Path child = resolver.child(parent, name);
+      Assert.assertEquals(name, new Path("cfs://vol/a/" + name), child);
+      Assert.assertEquals(name, child.getName());
+    }
+  }
+}
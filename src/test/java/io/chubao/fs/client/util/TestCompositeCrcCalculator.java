@@ -0,0 +1,88 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.stream.PositionReader;
+import org.apache.hadoop.fs.CompositeCrcFileChecksum;
+import org.apache.hadoop.util.CrcUtil;
+import org.apache.hadoop.util.DataChecksum;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCompositeCrcCalculator {
+  private byte[] data;
+  private AtomicInteger calls = new AtomicInteger(0);
+  private ExecutorService executor;
+
+  private PositionReader reader = (position, buf, off, len) -> {
+    calls.incrementAndGet();
+    if (position >= data.length) {
+      return -1;
+    }
+    int size = (int) Math.min(len, data.length - position);
+    System.arraycopy(data, (int) position, buf, off, size);
+    return size;
+  };
+
+  @Before
+  public void setUp() {
+    data = new byte[3 * 1024 * 1024 + 17];
+    new Random(7).nextBytes(data);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testMatchesCrcOfWholeFile() throws Exception {
+    DataChecksum sum = DataChecksum.newDataChecksum(DataChecksum.Type.CRC32C, 512);
+    sum.update(data, 0, data.length);
+    CompositeCrcFileChecksum expected =
+        new CompositeCrcFileChecksum((int) sum.getValue(), DataChecksum.Type.CRC32C, 512);
+
+    CompositeCrcCalculator calculator = new CompositeCrcCalculator(executor, 512, 10);
+    CompositeCrcFileChecksum small = calculator.compute("/a", 1, data.length, 1024 * 1024, reader);
+    CompositeCrcFileChecksum large = calculator.compute("/b", 1, data.length, 128 * 1024 * 1024, reader);
+    Assert.assertEquals(expected, small);
+    Assert.assertEquals(expected, large);
+    Assert.assertEquals("COMPOSITE-CRC32C", small.getAlgorithmName());
+    Assert.assertEquals((int) sum.getValue(), CrcUtil.readInt(small.getBytes(), 0));
+  }
+
+  @Test
+  public void testCacheByMtimeAndLength() throws Exception {
+    CompositeCrcCalculator calculator = new CompositeCrcCalculator(executor, 512, 10);
+    Assert.assertNull(calculator.getCached("/a", 1, data.length));
+    CompositeCrcFileChecksum checksum = calculator.compute("/a", 1, data.length, 1024 * 1024, reader);
+    Assert.assertEquals(checksum, calculator.getCached("/a", 1, data.length));
+    Assert.assertNull(calculator.getCached("/a", 2, data.length));
+    Assert.assertNull(calculator.getCached("/a", 1, data.length - 1));
+  }
+
+  @Test(expected = java.io.EOFException.class)
+  public void testShortFile() throws Exception {
+    CompositeCrcCalculator calculator = new CompositeCrcCalculator(executor, 512, 10);
+    calculator.compute("/a", 1, data.length + 1, 1024 * 1024, reader);
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.sdk.FileStorage;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestIdNameCache {
+  private static final long BLOCK_SIZE = 128L * 1024 * 1024;
+
+  /** The native calls of the stand-in storage by method name. */
+  private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+  private FileStorage storage;
+
+  @Before
+  public void setUp() {
+    storage = (FileStorage) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{FileStorage.class},
+        (proxy, method, args) -> {
+          int n = calls.computeIfAbsent(method.getName(), k -> new AtomicInteger(0)).incrementAndGet();
+          switch (method.getName()) {
+            case "getReplicaNumber":
+              return 3;
+            case "getBlockSize":
+              return BLOCK_SIZE;
+            case "getUser":
+              return "user" + args[0] + "-" + n;
+            case "getGroup":
+              return "group" + args[0] + "-" + n;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  @Test
+  public void testVolumeConstantsCached() {
+    IdNameCache ids = new IdNameCache(storage, 60 * 1000);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(3, ids.getReplicaNumber());
+      Assert.assertEquals(BLOCK_SIZE, ids.getBlockSize());
+    }
+    Assert.assertEquals(1, calls.get("getReplicaNumber").get());
+    Assert.assertEquals(1, calls.get("getBlockSize").get());
+  }
+
+  @Test
+  public void testHitsAndMisses() throws Exception {
+    IdNameCache ids = new IdNameCache(storage, 60 * 1000);
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("user1-1", ids.getUser(1));
+      Assert.assertEquals("group1-1", ids.getGroup(1));
+    }
+    Assert.assertEquals("user2-2", ids.getUser(2));
+    // The users and the groups are cached apart.
+    Assert.assertEquals("group2-2", ids.getGroup(2));
+    Assert.assertEquals(2, calls.get("getUser").get());
+    Assert.assertEquals(2, calls.get("getGroup").get());
+    Assert.assertEquals(8, ids.getHits());
+    Assert.assertEquals(4, ids.getMisses());
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    IdNameCache ids = new IdNameCache(storage, 20);
+    Assert.assertEquals("user1-1", ids.getUser(1));
+    Assert.assertEquals("user1-1", ids.getUser(1));
+    Thread.sleep(50);
+    Assert.assertEquals("user1-2", ids.getUser(1));
+    Assert.assertEquals(1, ids.getHits());
+    Assert.assertEquals(2, ids.getMisses());
+
+    IdNameCache uncached = new IdNameCache(storage, 0);
+    uncached.getGroup(1);
+    uncached.getGroup(1);
+    Assert.assertEquals(0, uncached.getHits());
+    Assert.assertEquals(2, uncached.getMisses());
+  }
+}
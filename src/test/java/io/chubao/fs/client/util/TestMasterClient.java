@@ -0,0 +1,47 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class TestMasterClient {
+
+  private static VolumeStat parse(String json) throws IOException {
+    return MasterClient.parseVolumeStat(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testParseVolumeStat() throws Exception {
+    VolumeStat stat = parse("{\"code\":0,\"msg\":\"success\",\"data\":{\"Name\":\"vol\","
+        + "\"TotalSize\":10737418240,\"UsedSize\":1024,\"UsedRatio\":\"0.00\",\"InodeCount\":12}}");
+    Assert.assertEquals(10737418240L, stat.getTotalSize());
+    Assert.assertEquals(1024, stat.getUsedSize());
+    Assert.assertEquals(10737418240L - 1024, stat.getRemainingSize());
+    Assert.assertEquals(12, stat.getInodeCount());
+
+    stat = parse("{\"code\":0,\"msg\":\"success\",\"data\":{\"Name\":\"vol\",\"TotalSize\":100,\"UsedSize\":200}}");
+    Assert.assertEquals(0, stat.getRemainingSize());
+    Assert.assertEquals(-1, stat.getInodeCount());
+  }
+
+  @Test(expected = IOException.class)
+  public void testParseError() throws Exception {
+    parse("{\"code\":1,\"msg\":\"vol not exists\",\"data\":null}");
+  }
+}
@@ -0,0 +1,147 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.sdk.CFSStatInfo;
+import io.chubao.fs.sdk.FileStorage;
+import io.chubao.fs.sdk.exception.CFSFileNotFoundException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestParallelDeleter {
+  private static final int DIR_MODE = 0040755;
+  private static final int FILE_MODE = 0100644;
+
+  /** The entries of the stand-in storage, a path to whether it is a directory. */
+  private final ConcurrentSkipListMap<String, Boolean> entries = new ConcurrentSkipListMap<>();
+  private final AtomicInteger lists = new AtomicInteger(0);
+  private FileStorage storage;
+
+  @Before
+  public void setUp() {
+    entries.put("/", true);
+    storage = (FileStorage) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{FileStorage.class},
+        (proxy, method, args) -> {
+          String path = (String) args[0];
+          switch (method.getName()) {
+            case "list":
+              lists.incrementAndGet();
+              return list(path).toArray(new CFSStatInfo[0]);
+            case "unlink":
+              if (entries.remove(path) == null) {
+                throw new CFSFileNotFoundException(path);
+              }
+              return null;
+            case "rmdir":
+              if (!list(path).isEmpty() && !(Boolean) args[1]) {
+                throw new IllegalStateException("Not empty: " + path);
+              }
+              entries.keySet().removeIf(p -> p.equals(path) || p.startsWith(path + "/"));
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  @Test
+  public void testSmallTreeIsLeftToRmdir() throws Exception {
+    mkdir("/a");
+    mkdir("/a/d");
+    for (int i = 0; i < 100; i++) {
+      touch("/a/d/f" + i);
+    }
+    for (int i = 0; i < 9; i++) {
+      touch("/a/f" + i);
+    }
+    ParallelDeleter deleter = new ParallelDeleter(storage, 4, 11, 100);
+    try {
+      // Only the root is listed, the entries under it are not counted.
+      Assert.assertFalse(deleter.deleteIfLarge("/a"));
+      Assert.assertEquals(1, lists.get());
+      Assert.assertEquals(112, entries.size());
+      Assert.assertFalse(deleter.deleteIfLarge("/missing"));
+    } finally {
+      deleter.close();
+    }
+  }
+
+  @Test
+  public void testLargeTreeReusesRootListing() throws Exception {
+    mkdir("/a");
+    for (int i = 0; i < 5; i++) {
+      mkdir("/a/d" + i);
+      mkdir("/a/d" + i + "/e");
+      for (int j = 0; j < 300; j++) {
+        touch("/a/d" + i + "/e/f" + j);
+      }
+      touch("/a/f" + i);
+    }
+    touch("/other");
+    ParallelDeleter deleter = new ParallelDeleter(storage, 4, 10, 100);
+    try {
+      Assert.assertTrue(deleter.deleteIfLarge("/a"));
+      // The root, and every directory under it once.
+      Assert.assertEquals(11, lists.get());
+      Assert.assertEquals(2, entries.size());
+      Assert.assertTrue(entries.containsKey("/other"));
+
+      // The pool is reused by the next delete.
+      mkdir("/b");
+      for (int j = 0; j < 20; j++) {
+        touch("/b/f" + j);
+      }
+      Assert.assertTrue(deleter.deleteIfLarge("/b"));
+      Assert.assertEquals(2, entries.size());
+    } finally {
+      deleter.close();
+    }
+  }
+
+  private List<CFSStatInfo> list(String path) throws CFSFileNotFoundException {
+    Boolean dir = entries.get(path);
+    if (dir == null || !dir) {
+      throw new CFSFileNotFoundException(path);
+    }
+    String prefix = path.endsWith("/") ? path : path + "/";
+    List<CFSStatInfo> children = new ArrayList<>();
+    for (Map.Entry<String, Boolean> e : entries.tailMap(prefix, false).entrySet()) {
+      String p = e.getKey();
+      if (!p.startsWith(prefix)) {
+        break;
+      }
+      String name = p.substring(prefix.length());
+      if (!name.contains("/")) {
+        children.add(new CFSStatInfo(e.getValue() ? DIR_MODE : FILE_MODE, 0, 0, 0, 0, 0, 0, name));
+      }
+    }
+    return children;
+  }
+
+  private void mkdir(String path) {
+    entries.put(path, true);
+  }
+
+  private void touch(String path) {
+    entries.put(path, false);
+  }
+}
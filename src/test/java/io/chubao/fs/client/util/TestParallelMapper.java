@@ -0,0 +1,109 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestParallelMapper {
+  private static final int THREADS = 4;
+
+  private ExecutorService executor;
+  private List<Integer> inputs = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(THREADS);
+    for (int i = 0; i < 200; i++) {
+      inputs.add(i);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSlowMapper() throws Exception {
+    // The helpers are still in their last input when the caller runs out of inputs.
+    for (int round = 0; round < 5; round++) {
+      Integer[] results = new Integer[inputs.size()];
+      ParallelMapper.map(inputs, results, input -> {
+        sleep(input % 7 == 0 ? 20 : 1);
+        return input * 2;
+      }, executor, THREADS);
+      for (int i = 0; i < results.length; i++) {
+        Assert.assertEquals(Integer.valueOf(i * 2), results[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testBusyExecutor() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < THREADS; i++) {
+      executor.execute(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    try {
+      Integer[] results = new Integer[inputs.size()];
+      ParallelMapper.map(inputs, results, input -> input + 1, executor, THREADS);
+      for (int i = 0; i < results.length; i++) {
+        Assert.assertEquals(Integer.valueOf(i + 1), results[i]);
+      }
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    Integer[] results = new Integer[inputs.size()];
+    try {
+      ParallelMapper.map(inputs, results, input -> {
+        sleep(2);
+        if (input == 150) {
+          throw new IOException("Failed on " + input);
+        }
+        return input;
+      }, executor, THREADS);
+      Assert.fail("The failure of a helper is lost.");
+    } catch (IOException e) {
+      Assert.assertEquals("Failed on 150", e.getMessage());
+    }
+  }
+
+  private static void sleep(long ms) throws IOException {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+}
@@ -13,10 +13,27 @@
 // permissions and limitations under the License.
 package org.apache.hadoop.fs;
 
+import io.chubao.fs.client.commit.CFSOutputCommitter;
+import io.chubao.fs.client.stream.StreamStatistics;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.statistics.IOStatistics;
+import org.apache.hadoop.fs.statistics.IOStatisticsLogging;
+import org.apache.hadoop.fs.statistics.IOStatisticsSource;
+import org.apache.hadoop.fs.statistics.StoreStatisticNames;
+import org.apache.hadoop.fs.statistics.StreamStatisticNames;
 import org.apache.hadoop.hdfs.ChubaoFileSystem;
+import org.apache.hadoop.io.ElasticByteBufferPool;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -24,6 +41,17 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TestChubaoFileSystemContract extends FileSystemContractBaseTest {
   private static final Log log = LogFactory.getLog(TestChubaoFileSystemContract.class);
@@ -37,11 +65,6 @@ public class TestChubaoFileSystemContract extends FileSystemContractBaseTest {
     System.out.println("fs:" + fs.getScheme());
   }
 
-  @Test
-  public void testFsStatus() throws Exception {
-    log.warn("Not implement the function.");
-  }
-
   @Test
   public void testListStatusForFile() throws Exception {
     Path basePath = getTestBaseDir();
@@ -88,6 +111,457 @@ public class TestChubaoFileSystemContract extends FileSystemContractBaseTest {
     in.close();
   }
 
+  @Test
+  public void testConcurrentPositionedRead() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testConcurrentPositionedRead/file0");
+    int dataSize = 1024 * 1024 * 4;
+    byte[] data = new byte[dataSize];
+    new Random(17).nextBytes(data);
+    FSDataOutputStream out = fs.create(path);
+    out.write(data);
+    out.close();
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try (FSDataInputStream in = fs.open(path)) {
+      in.seek(100);
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final long seed = t;
+        results.add(pool.submit(() -> {
+          Random random = new Random(seed);
+          byte[] buf = new byte[4096];
+          for (int i = 0; i < 100; i++) {
+            int position = random.nextInt(dataSize - buf.length);
+            in.readFully(position, buf, 0, buf.length);
+            for (int j = 0; j < buf.length; j++) {
+              if (buf[j] != data[position + j]) {
+                return false;
+              }
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get());
+      }
+      Assert.assertEquals(100, in.getPos());
+
+      ByteBuffer buff = ByteBuffer.allocateDirect(1024);
+      in.readFully(dataSize - 1024, buff);
+      for (int i = 0; i < 1024; i++) {
+        Assert.assertEquals(data[dataSize - 1024 + i], buff.get(i));
+      }
+
+      // Larger than the copy buffer, one call fills it; at the end of the file, the read is short.
+      ByteBuffer big = ByteBuffer.allocateDirect(300 * 1024);
+      Assert.assertEquals(big.capacity(), in.read(1000, big));
+      for (int i = 0; i < big.capacity(); i++) {
+        Assert.assertEquals(data[1000 + i], big.get(i));
+      }
+      big.clear();
+      Assert.assertEquals(1000, in.read(dataSize - 1000, big));
+      big.clear();
+      Assert.assertEquals(-1, in.read(dataSize, big));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testVectoredRead() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testVectoredRead/file0");
+    int dataSize = 1024 * 1024 * 4;
+    byte[] data = new byte[dataSize];
+    new Random(19).nextBytes(data);
+    FSDataOutputStream out = fs.create(path);
+    out.write(data);
+    out.close();
+
+    List<FileRange> ranges = new ArrayList<>();
+    ranges.add(FileRange.createFileRange(3 * 1024 * 1024, 1000));
+    ranges.add(FileRange.createFileRange(0, 100));
+    ranges.add(FileRange.createFileRange(110, 2000));
+    ranges.add(FileRange.createFileRange(dataSize - 10, 10));
+    ranges.add(FileRange.createFileRange(1024 * 1024, 1024 * 1024 + 1));
+    try (FSDataInputStream in = fs.open(path)) {
+      in.readVectored(ranges, ByteBuffer::allocate);
+      for (FileRange range : ranges) {
+        ByteBuffer buff = range.getData().get();
+        Assert.assertEquals(range.getLength(), buff.remaining());
+        for (int i = 0; i < range.getLength(); i++) {
+          Assert.assertEquals(data[(int) range.getOffset() + i], buff.get(buff.position() + i));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testZeroCopyRead() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testZeroCopyRead/file0");
+    int dataSize = 1024 * 1024 + 100;
+    byte[] data = new byte[dataSize];
+    new Random(23).nextBytes(data);
+    FSDataOutputStream out = fs.create(path);
+    out.write(data);
+    out.close();
+
+    ElasticByteBufferPool pool = new ElasticByteBufferPool();
+    try (FSDataInputStream in = fs.open(path)) {
+      int len = 0;
+      while (true) {
+        ByteBuffer buff = in.read(pool, 64 * 1024, EnumSet.of(ReadOption.SKIP_CHECKSUMS));
+        if (buff == null) {
+          break;
+        }
+        Assert.assertTrue(buff.isDirect());
+        for (int i = 0; i < buff.remaining(); i++) {
+          Assert.assertEquals(data[len + i], buff.get(buff.position() + i));
+        }
+        len += buff.remaining();
+        in.releaseBuffer(buff);
+      }
+      Assert.assertEquals(dataSize, len);
+    }
+  }
+
+  @Test
+  public void testSmallWritesAndHflush() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testSmallWritesAndHflush/file0");
+    FSDataOutputStream out = fs.create(path);
+    int records = 200000;
+    for (int i = 0; i < records; i++) {
+      out.writeInt(i);
+      out.write(i);
+    }
+    out.hflush();
+    Assert.assertEquals(records * 5L, fs.getFileStatus(path).getLen());
+    out.write(new byte[9 * 1024 * 1024]);
+    out.close();
+    Assert.assertEquals(records * 5L + 9 * 1024 * 1024, fs.getFileStatus(path).getLen());
+
+    try (FSDataInputStream in = fs.open(path)) {
+      for (int i = 0; i < records; i++) {
+        Assert.assertEquals(i, in.readInt());
+        Assert.assertEquals(i & 0xff, in.read());
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentHsync() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testConcurrentHsync/file0");
+    int threads = 8;
+    int records = 200;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    FSDataOutputStream out = fs.create(path);
+    try {
+      Assert.assertTrue(out.hasCapability(StreamCapabilities.HFLUSH));
+      Assert.assertTrue(out.hasCapability(StreamCapabilities.HSYNC));
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        results.add(pool.submit(() -> {
+          for (int i = 0; i < records; i++) {
+            out.write(new byte[100]);
+            out.hsync();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+      Assert.assertEquals(threads * records * 100L, fs.getFileStatus(path).getLen());
+
+      Map<String, Long> counters = out.getIOStatistics().counters();
+      long flushes = counters.get(StreamStatistics.STREAM_WRITE_SYNC_FLUSHES);
+      long coalesced = counters.get(StreamStatistics.STREAM_WRITE_SYNC_COALESCED);
+      Assert.assertEquals(threads * records, flushes + coalesced);
+      long histogram = 0;
+      for (String key : StreamStatistics.STREAM_WRITE_SYNC_LATENCY) {
+        histogram += counters.get(key);
+      }
+      Assert.assertEquals(threads * records, histogram);
+    } finally {
+      pool.shutdownNow();
+      out.close();
+    }
+  }
+
+  @Test
+  public void testListStatusIterator() throws Exception {
+    Path dir = new Path(getTestBaseDir(), "testListStatusIterator");
+    int files = 2500;
+    for (int i = 0; i < files; i++) {
+      fs.create(new Path(dir, "file" + i)).close();
+    }
+    int count = 0;
+    RemoteIterator<FileStatus> it = fs.listStatusIterator(dir);
+    while (it.hasNext()) {
+      Assert.assertTrue(it.next().isFile());
+      count++;
+    }
+    Assert.assertEquals(files, count);
+
+    count = 0;
+    RemoteIterator<LocatedFileStatus> located = fs.listLocatedStatus(dir);
+    while (located.hasNext()) {
+      Assert.assertNotNull(located.next().getBlockLocations());
+      count++;
+    }
+    Assert.assertEquals(files, count);
+  }
+
+  @Test
+  public void testGetFileChecksum() throws Exception {
+    byte[] data = new byte[1024 * 1024 + 17];
+    new java.util.Random(3).nextBytes(data);
+    Path dir = new Path(getTestBaseDir(), "testGetFileChecksum");
+    Path[] paths = {new Path(dir, "file0"), new Path(dir, "file1")};
+    for (Path path : paths) {
+      FSDataOutputStream out = fs.create(path);
+      out.write(data);
+      out.close();
+    }
+
+    FileChecksum checksum = fs.getFileChecksum(paths[0]);
+    Assert.assertEquals("COMPOSITE-CRC32C", checksum.getAlgorithmName());
+    Assert.assertEquals(checksum, fs.getFileChecksum(paths[1]));
+    Assert.assertNotEquals(checksum, fs.getFileChecksum(paths[1], data.length - 1));
+  }
+
+  @Test
+  public void testFsStatus() throws Exception {
+    FsStatus status = fs.getStatus();
+    Assert.assertTrue(status.getCapacity() > 0);
+    Assert.assertTrue(status.getUsed() >= 0);
+    Assert.assertEquals(Math.max(0, status.getCapacity() - status.getUsed()), status.getRemaining());
+  }
+
+  @Test
+  public void testCreateUnderMissingParent() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testCreateUnderMissingParent/a/b/file0");
+    fs.create(path).close();
+    Assert.assertTrue(fs.getFileStatus(path.getParent()).isDirectory());
+    Assert.assertTrue(fs.getFileStatus(path).isFile());
+
+    // A dir is not a missing parent, the open fails without creating anything.
+    try {
+      fs.create(path.getParent()).close();
+      Assert.fail("Created a file over a dir.");
+    } catch (IOException e) {
+      Assert.assertTrue(fs.getFileStatus(path.getParent()).isDirectory());
+    }
+  }
+
+  @Test
+  public void testCreateAfterCachedParentDeleted() throws Exception {
+    Path dir = new Path(getTestBaseDir(), "testCreateAfterCachedParentDeleted/dir");
+    fs.create(new Path(dir, "file0")).close();
+
+    // Deleted through another instance, so the parent stays in the dir cache of fs.
+    FileSystem other = FileSystem.newInstance(fs.getUri(), fs.getConf());
+    try {
+      Assert.assertTrue(other.delete(dir, true));
+    } finally {
+      other.close();
+    }
+    Path path = new Path(dir, "file1");
+    fs.create(path).close();
+    Assert.assertTrue(fs.getFileStatus(path).isFile());
+    Assert.assertFalse(fs.exists(new Path(dir, "file0")));
+  }
+
+  @Test
+  public void testCreateNoOverwrite() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testCreateNoOverwrite/file0");
+    FSDataOutputStream out = fs.create(path, false);
+    out.write(1);
+    out.close();
+    try {
+      fs.create(path, false).close();
+      Assert.fail("Overwrote an existing file.");
+    } catch (FileAlreadyExistsException e) {
+      Assert.assertEquals(1, fs.getFileStatus(path).getLen());
+    }
+  }
+
+  @Test
+  public void testOutputCommitter() throws Exception {
+    Assert.assertTrue(fs instanceof ChubaoFileSystem);
+    Path output = new Path(getTestBaseDir(), "testOutputCommitter/out");
+    JobID jobId = new JobID("test", 1);
+    JobContext job = new JobContextImpl(fs.getConf(), jobId);
+    new CFSOutputCommitter(output, job).setupJob(job);
+
+    // Every task writes into dt=1, so the renames after the first one find the directory with content.
+    for (int attempt = 0; attempt < 2; attempt++) {
+      for (int i = 0; i < 3; i++) {
+        if (attempt == 1 && i != 2) {
+          continue;
+        }
+        TaskAttemptContext context = new TaskAttemptContextImpl(fs.getConf(),
+            new TaskAttemptID(jobId.getJtIdentifier(), jobId.getId(), TaskType.REDUCE, i, attempt));
+        CFSOutputCommitter committer = new CFSOutputCommitter(output, context);
+        committer.setupTask(context);
+        String content = attempt == 0 ? "task" + i : "retry";
+        for (String name : new String[]{"part-" + i, "dt=1/part-" + i, "dt=" + (i + 2) + "/part-" + i}) {
+          try (FSDataOutputStream out = fs.create(new Path(committer.getWorkPath(), name))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+          }
+        }
+        committer.commitTask(context);
+      }
+    }
+    new CFSOutputCommitter(output, job).commitJob(job);
+
+    for (int i = 0; i < 3; i++) {
+      byte[] expected = (i == 2 ? "retry" : "task" + i).getBytes(StandardCharsets.UTF_8);
+      for (String name : new String[]{"part-" + i, "dt=1/part-" + i, "dt=" + (i + 2) + "/part-" + i}) {
+        byte[] content = new byte[expected.length];
+        try (FSDataInputStream in = fs.open(new Path(output, name))) {
+          in.readFully(content);
+          Assert.assertEquals(-1, in.read());
+        }
+        Assert.assertArrayEquals(name, expected, content);
+      }
+    }
+    Assert.assertEquals(3, fs.listStatus(new Path(output, "dt=1")).length);
+    Assert.assertTrue(fs.exists(new Path(output, FileOutputCommitter.SUCCEEDED_FILE_NAME)));
+    Assert.assertFalse(fs.exists(new Path(output, FileOutputCommitter.PENDING_DIR_NAME)));
+  }
+
+  @Test
+  public void testSharedStorage() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testSharedStorage/file0");
+    fs.create(path).close();
+
+    FileSystem other = FileSystem.newInstance(fs.getUri(), fs.getConf());
+    Assert.assertTrue(other.exists(path));
+    other.close();
+    other.close();
+    Assert.assertTrue(fs.exists(path));
+
+    // The instances of a proxy user share the storage and live in the home of that user.
+    UserGroupInformation proxy = UserGroupInformation.createRemoteUser("cfs-proxy");
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<FileSystem>> instances = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        instances.add(pool.submit(() -> proxy.doAs(
+            (PrivilegedExceptionAction<FileSystem>) () -> FileSystem.newInstance(fs.getUri(), fs.getConf()))));
+      }
+      for (Future<FileSystem> instance : instances) {
+        FileSystem proxied = instance.get();
+        Assert.assertEquals("cfs-proxy", proxied.getHomeDirectory().getName());
+        Assert.assertTrue(proxied.exists(path));
+        proxied.close();
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    Assert.assertTrue(fs.exists(path));
+  }
+
+  @Test
+  public void testAsyncInit() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testAsyncInit/file0");
+    fs.create(path).close();
+
+    Configuration conf = new Configuration(fs.getConf());
+    conf.setBoolean("fs.cfs.init.async", true);
+    FileSystem other = FileSystem.newInstance(fs.getUri(), conf);
+    try {
+      Assert.assertTrue(other.exists(path));
+      Assert.assertEquals(fs.getWorkingDirectory(), other.getWorkingDirectory());
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testIOStatistics() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testIOStatistics/file0");
+    byte[] data = new byte[1024 * 1024];
+    FSDataOutputStream out = fs.create(path);
+    out.write(data);
+    out.close();
+
+    IOStatistics fsStats = ((IOStatisticsSource) fs).getIOStatistics();
+    long bytesRead = fsStats.counters().get(StreamStatisticNames.STREAM_READ_BYTES);
+    long opens = fsStats.counters().get(StoreStatisticNames.OP_OPEN);
+    FSDataInputStream in = fs.open(path);
+    in.readFully(0, data);
+    in.seek(100);
+    in.seek(0);
+    IOStatistics streamStats = in.getIOStatistics();
+    Assert.assertEquals(data.length, streamStats.counters().get(StreamStatisticNames.STREAM_READ_BYTES).longValue());
+    Assert.assertEquals(1, streamStats.counters().get(StreamStatisticNames.STREAM_READ_SEEK_BACKWARD_OPERATIONS).longValue());
+    in.close();
+
+    Assert.assertEquals(opens + 1, fsStats.counters().get(StoreStatisticNames.OP_OPEN).longValue());
+    Assert.assertEquals(bytesRead + data.length, fsStats.counters().get(StreamStatisticNames.STREAM_READ_BYTES).longValue());
+    log.info(IOStatisticsLogging.ioStatisticsToPrettyString(fsStats));
+  }
+
+  @Test
+  public void testGetFileStatuses() throws Exception {
+    Path dir = new Path(getTestBaseDir(), "testGetFileStatuses");
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Path path = new Path(dir, "dt=" + i);
+      if (i % 3 != 0) {
+        fs.mkdirs(path);
+      }
+      paths.add(path);
+    }
+
+    FileStatus[] statuses = ((ChubaoFileSystem) fs).getFileStatuses(paths);
+    Assert.assertEquals(paths.size(), statuses.length);
+    for (int i = 0; i < statuses.length; i++) {
+      if (i % 3 == 0) {
+        Assert.assertNull(statuses[i]);
+      } else {
+        Assert.assertEquals(fs.getFileStatus(paths.get(i)), statuses[i]);
+      }
+    }
+
+    FileStatus[] globbed = fs.globStatus(new Path(dir, "dt={1,2,3,5}"));
+    Assert.assertEquals(3, globbed.length);
+    Assert.assertEquals("dt=1", globbed[0].getPath().getName());
+    Assert.assertEquals("dt=2", globbed[1].getPath().getName());
+    Assert.assertEquals("dt=5", globbed[2].getPath().getName());
+    Assert.assertEquals(0, fs.globStatus(new Path(dir, "dt={0,3}")).length);
+    Assert.assertEquals(1, fs.globStatus(new Path(dir, "dt={1,2}"), path -> path.getName().endsWith("2")).length);
+  }
+
+  @Test
+  public void testUnbuffer() throws Exception {
+    Path path = new Path(getTestBaseDir(), "testUnbuffer/file0");
+    int dataSize = 1024 * 1024 + 100;
+    byte[] data = new byte[dataSize];
+    new Random(29).nextBytes(data);
+    FSDataOutputStream out = fs.create(path);
+    out.write(data);
+    out.close();
+
+    try (FSDataInputStream in = fs.open(path)) {
+      Assert.assertTrue(in.hasCapability(StreamCapabilities.UNBUFFER));
+      byte[] buf = new byte[dataSize];
+      in.readFully(buf, 0, 1000);
+      in.unbuffer();
+      in.unbuffer();
+      Assert.assertEquals(1000, in.getPos());
+      byte[] part = new byte[100];
+      in.readFully(dataSize - 100, part, 0, part.length);
+      Assert.assertArrayEquals(Arrays.copyOfRange(data, dataSize - 100, dataSize), part);
+      in.unbuffer();
+      in.readFully(buf, 1000, dataSize - 1000);
+      Assert.assertArrayEquals(data, buf);
+      Assert.assertEquals(-1, in.read());
+    }
+  }
+
 
   /*
   @After